@@ -0,0 +1,29 @@
+package ru.flint.voteforlunch.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Caches filled by CacheWarmer at night expire by {@code cache-warmer.spec} instead of {@code spring.cache.caffeine.spec},
+ * so the warmed entries are still there for the first requests in the morning. The other caches keep the global expiry.
+ */
+@Configuration
+@Slf4j
+public class CacheConfiguration {
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> warmedCaches(
+            @Value("${cache-warmer.caches:menu,menus,voteDistribution}") List<String> cacheNames,
+            @Value("${cache-warmer.spec:maximumSize=5000,expireAfterAccess=1d,recordStats}") String spec) {
+        return cacheManager -> cacheNames.forEach(cacheName -> {
+            log.info("Cache {} is warmed, spec {}", cacheName, spec);
+            cacheManager.registerCustomCache(cacheName, Caffeine.from(spec).build());
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package ru.flint.voteforlunch.config;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.flint.voteforlunch.web.controller.VoteController;
+
+/**
+ * Metrics beyond the ones of Spring Boot, all exported on {@code /actuator/prometheus}: timers of the services
+ * annotated with {@link Timed}, tagged with the class and the method, and latency histograms with percentiles of the
+ * vote endpoints. Cache and connection pool metrics are bound by Spring Boot.
+ */
+@Configuration
+public class MetricsConfiguration {
+    private static final String HTTP_SERVER_REQUESTS = "http.server.requests";
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public MeterFilter voteRequestsHistogram() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                String uri = id.getTag("uri");
+                if (!id.getName().equals(HTTP_SERVER_REQUESTS) || uri == null || !uri.startsWith(VoteController.REST_URL)) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .percentiles(0.5, 0.95, 0.99)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
@@ -4,21 +4,33 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import ru.flint.voteforlunch.model.Role;
-import ru.flint.voteforlunch.model.User;
+import ru.flint.voteforlunch.model.UserCredentials;
 import ru.flint.voteforlunch.repository.UserRepository;
+import ru.flint.voteforlunch.web.security.AccessTokenFilter;
+import ru.flint.voteforlunch.web.security.AccessTokens;
+import ru.flint.voteforlunch.web.security.AuthenticationCache;
 import ru.flint.voteforlunch.web.security.AuthorizedUser;
 
-import java.util.Optional;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 
 @Configuration
 @EnableWebSecurity
@@ -37,9 +49,15 @@ public class SecurityConfiguration {
     public UserDetailsService userDetailsService() {
         return email -> {
             log.debug("Authenticating '{}'", email);
-            Optional<User> optionalUser = userRepository.findByEmailIgnoreCase(email);
-            return new AuthorizedUser(optionalUser.orElseThrow(
-                    () -> new UsernameNotFoundException("User '" + email + "' not found")));
+            // the columns authentication needs instead of a managed user entity
+            List<UserCredentials> credentials = userRepository.getCredentials(email);
+            if (credentials.isEmpty()) {
+                throw new UsernameNotFoundException("User '" + email + "' not found");
+            }
+            Set<Role> roles = EnumSet.noneOf(Role.class);
+            credentials.forEach(row -> roles.add(row.role()));
+            UserCredentials user = credentials.get(0);
+            return new AuthorizedUser(user.userId(), user.email(), user.password(), roles);
         };
     }
 
@@ -52,11 +70,32 @@ public class SecurityConfiguration {
                 .requestMatchers("/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**");
     }
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
-        http.authorizeHttpRequests()
+    public SecurityFilterChain filterChain(HttpSecurity http,
+                                           AuthenticationCache authenticationCache,
+                                           AccessTokens accessTokens) throws Exception {
+        DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider() {
+            // the cached authentication keeps neither the password hash nor the presented password
+            @Override
+            protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                                 UserDetails user) {
+                AuthorizedUser authorizedUser = ((AuthorizedUser) user).withoutPassword();
+                UsernamePasswordAuthenticationToken result = UsernamePasswordAuthenticationToken.authenticated(
+                        authorizedUser, null, authorizedUser.getAuthorities());
+                result.setDetails(authentication.getDetails());
+                return result;
+            }
+        };
+        authenticationProvider.setUserDetailsService(userDetailsService());
+        authenticationProvider.setPasswordEncoder(passwordEncoder());
+        http.authenticationManager(new ProviderManager(authenticationCache.cached(authenticationProvider)))
+                // tokens are issued for credentials only
+                .addFilterBefore(new AccessTokenFilter(accessTokens, new AntPathRequestMatcher("/api/version1.0/auth/token")),
+                        BasicAuthenticationFilter.class)
+                .authorizeHttpRequests()
+                .requestMatchers("/api/version1.0/auth/**").authenticated()
                 .requestMatchers("/api/version1.0/votes/**", "/api/version1.0/users/profile/**").authenticated()
                 .requestMatchers(HttpMethod.GET, "/api/version1.0/menus/**", "/api/version1.0/restaurants/**").authenticated()
-                .requestMatchers("/api/**").hasRole(Role.ADMIN.name())
+                .requestMatchers("/api/**", "/actuator/**").hasRole(Role.ADMIN.name())
                 .anyRequest().authenticated() // this setting is for H2 console only
                 .and().httpBasic()
                 .and().sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
@@ -0,0 +1,101 @@
+package ru.flint.voteforlunch.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves Tomcat requests and asynchronous MVC work (Server-Sent Events, streamed exports) on virtual threads when
+ * {@value #ENABLED_PROPERTY} is set. Request handling is blocking JDBC, so a request waiting for the database no longer
+ * holds a platform thread. Without the cap of the Tomcat thread pool the JDBC pool becomes the limit of concurrent
+ * database work, it is sized by {@value #JDBC_POOL_SIZE_PROPERTY}, by default as the Tomcat thread pool
+ * ({@value #TOMCAT_MAX_THREADS_PROPERTY}).
+ * <p>
+ * The application is built for Java 17, so the executor is created reflectively and the mode is ignored with a warning
+ * on older runtimes.
+ */
+@Configuration
+@Conditional(VirtualThreadsConfiguration.OnVirtualThreads.class)
+@Slf4j
+public class VirtualThreadsConfiguration {
+    public static final String ENABLED_PROPERTY = "virtual-threads.enabled";
+    public static final String JDBC_POOL_SIZE_PROPERTY = "virtual-threads.jdbc-pool-size";
+    static final String TOMCAT_MAX_THREADS_PROPERTY = "server.tomcat.threads.max";
+    // Spring Boot default of server.tomcat.threads.max
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    public static boolean isSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService virtualThreadExecutor() throws ReflectiveOperationException {
+        log.info("Serve requests on virtual threads");
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Can not create virtual threads executor", e.getCause());
+        }
+    }
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    // used by Spring MVC for asynchronous requests
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+    @Bean
+    static BeanPostProcessor virtualThreadsJdbcPoolSizer(Environment environment) {
+        int tomcatMaxThreads = environment.getProperty(TOMCAT_MAX_THREADS_PROPERTY, Integer.class, TOMCAT_MAX_THREADS);
+        int poolSize = environment.getProperty(JDBC_POOL_SIZE_PROPERTY, Integer.class, tomcatMaxThreads);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource) {
+                    log.info("Size JDBC pool for virtual threads: {} connections", poolSize);
+                    dataSource.setMaxActive(poolSize);
+                    dataSource.setMaxIdle(poolSize);
+                }
+                return bean;
+            }
+        };
+    }
+
+    static class OnVirtualThreads extends SpringBootCondition {
+        @Override
+        public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            if (!context.getEnvironment().getProperty(ENABLED_PROPERTY, Boolean.class, false)) {
+                return ConditionOutcome.noMatch(ENABLED_PROPERTY + " is not set");
+            }
+            if (!isSupported()) {
+                log.warn("{} is ignored: virtual threads need Java 21, running on {}", ENABLED_PROPERTY, Runtime.version());
+                return ConditionOutcome.noMatch("virtual threads need Java 21");
+            }
+            return ConditionOutcome.match(ENABLED_PROPERTY + " is set");
+        }
+    }
+}
@@ -15,8 +15,11 @@ import java.util.Objects;
 @AllArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString
 public class AbstractEntity implements Persistable<Long> {
+    // a <table>_seq sequence per table, ids are allocated in blocks of 50 so Hibernate can batch the inserts;
+    // native inserts take their ids with NEXT VALUE FOR <table>_seq. Inserts are deferred to the flush, services flush
+    // on create to report constraint violations from the call
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
     protected Long id;
 
     @Override
@@ -0,0 +1,9 @@
+package ru.flint.voteforlunch.model;
+
+import java.time.LocalTime;
+
+public record Ballot(
+        Long userId,
+        Long restaurantId,
+        LocalTime voteTime) {
+}
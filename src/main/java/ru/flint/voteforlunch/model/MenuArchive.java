@@ -0,0 +1,62 @@
+package ru.flint.voteforlunch.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Menu moved to the cold tier by {@link ru.flint.voteforlunch.service.ArchiveService}. Keeps the id of the menu.
+ */
+@NoArgsConstructor
+@Getter
+@Entity
+@Immutable
+@Table(
+        name = "menu_archive",
+        indexes = {
+                @Index(name = "menu_archive_date_idx", columnList = "MENU_DATE")
+        })
+@ToString
+public class MenuArchive {
+    @Id
+    private Long id;
+
+    @Column(name = "menu_date", nullable = false)
+    private LocalDate menuDate;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    private Restaurant restaurant;
+
+    @OneToMany(mappedBy = "menu")
+    @ToString.Exclude
+    private Set<MenuItemArchive> menuItemSet = new HashSet<>();
+
+    /**
+     * The menu without its items, as the menus on a date are listed.
+     */
+    public Menu toMenu() {
+        Menu menu = new Menu();
+        menu.setId(id);
+        menu.setMenuDate(menuDate);
+        menu.setRestaurant(restaurant);
+        return menu;
+    }
+
+    public Menu toMenuWithItems() {
+        Menu menu = toMenu();
+        for (MenuItemArchive item : menuItemSet) {
+            MenuItem menuItem = new MenuItem(item.getDish(), null, item.getPrice());
+            menuItem.setId(item.getId());
+            menu.addMenuItem(menuItem);
+        }
+        return menu;
+    }
+}
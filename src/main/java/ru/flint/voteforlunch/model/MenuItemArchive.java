@@ -0,0 +1,37 @@
+package ru.flint.voteforlunch.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+/**
+ * Item of an archived menu, see {@link MenuArchive}.
+ */
+@NoArgsConstructor
+@Getter
+@Entity
+@Immutable
+@Table(
+        name = "menu_item_archive",
+        indexes = {
+                @Index(name = "menu_item_archive_menu_id_idx", columnList = "MENU_ID")
+        })
+@ToString
+public class MenuItemArchive {
+    @Id
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "dish_id", nullable = false)
+    private Dish dish;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    private MenuArchive menu;
+
+    @Column(name = "price", nullable = false)
+    private Integer price;
+}
@@ -0,0 +1,42 @@
+package ru.flint.voteforlunch.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+
+/**
+ * Periods of the votes results rollups, from the longest to the shortest.
+ */
+public enum RollupPeriod {
+    MONTH {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date.withDayOfMonth(1);
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusMonths(1);
+        }
+    },
+    WEEK {
+        @Override
+        public LocalDate start(LocalDate date) {
+            return date.with(DayOfWeek.MONDAY);
+        }
+
+        @Override
+        public LocalDate next(LocalDate start) {
+            return start.plusWeeks(1);
+        }
+    };
+
+    /**
+     * First date of the period containing the date.
+     */
+    public abstract LocalDate start(LocalDate date);
+
+    /**
+     * First date of the period following the one starting on {@code start}.
+     */
+    public abstract LocalDate next(LocalDate start);
+}
@@ -0,0 +1,11 @@
+package ru.flint.voteforlunch.model;
+
+/**
+ * What authentication needs to know about a user, one row per role.
+ */
+public record UserCredentials(
+        Long userId,
+        String email,
+        String password,
+        Role role) {
+}
@@ -0,0 +1,35 @@
+package ru.flint.voteforlunch.model;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Detached read-only view of a user without the password, kept in the {@code userProfile} cache.
+ */
+public record UserProfile(
+        Long id,
+        String email,
+        String firstName,
+        String lastName,
+        boolean enabled,
+        Set<Role> roles) {
+
+    /**
+     * A row of the profile query, one per role of the user.
+     */
+    public UserProfile(Long id, String email, String firstName, String lastName, boolean enabled, Role role) {
+        this(id, email, firstName, lastName, enabled, role == null ? Set.of() : Set.of(role));
+    }
+
+    /**
+     * The profile of the rows of one user, with the roles of all of them.
+     */
+    public static UserProfile of(List<UserProfile> rows) {
+        Set<Role> roles = EnumSet.noneOf(Role.class);
+        rows.forEach(row -> roles.addAll(row.roles()));
+        UserProfile user = rows.get(0);
+        return new UserProfile(user.id(), user.email(), user.firstName(), user.lastName(), user.enabled(),
+                Set.copyOf(roles));
+    }
+}
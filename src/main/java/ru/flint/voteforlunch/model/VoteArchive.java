@@ -0,0 +1,54 @@
+package ru.flint.voteforlunch.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Vote moved to the cold tier by {@link ru.flint.voteforlunch.service.ArchiveService}. Keeps the id of the vote.
+ */
+@NoArgsConstructor
+@Getter
+@Entity
+@Immutable
+@Table(
+        name = "vote_archive",
+        indexes = {
+                @Index(name = "vote_archive_user_id_date_idx", columnList = "USER_ID,VOTE_DATE DESC"),
+                @Index(name = "vote_archive_date_user_id_idx", columnList = "VOTE_DATE,USER_ID")
+        })
+@ToString
+public class VoteArchive {
+    @Id
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    private Restaurant restaurant;
+
+    @Column(name = "vote_date", nullable = false)
+    private LocalDate voteDate;
+
+    @Column(name = "vote_time", nullable = false)
+    private LocalTime voteTime;
+
+    public Vote toVote() {
+        Vote vote = new Vote();
+        vote.setId(id);
+        vote.setRestaurant(restaurant);
+        vote.setVoteDate(voteDate);
+        vote.setVoteTime(voteTime);
+        return vote;
+    }
+}
@@ -1,12 +1,34 @@
 package ru.flint.voteforlunch.model;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 public record VoteDistribution (
         Long restaurantId,
         String restaurantName,
         Long voteCount) {
+    public static final Comparator<VoteDistribution> ORDER = Comparator
+            .comparing(VoteDistribution::voteCount, Comparator.reverseOrder())
+            .thenComparing(VoteDistribution::restaurantName);
+
     public VoteDistribution(Long restaurantId, String restaurantName, Long voteCount) {
         this.restaurantId = restaurantId;
         this.restaurantName = restaurantName;
         this.voteCount = voteCount == null ? 0 : voteCount;
     }
+
+    /**
+     * Adds up the votes counts of each restaurant, e.g. over several dates. The last name of a restaurant wins.
+     */
+    public static List<VoteDistribution> sum(Stream<VoteDistribution> distributions) {
+        return distributions
+                .collect(Collectors.toMap(VoteDistribution::restaurantId, Function.identity(),
+                        (a, b) -> new VoteDistribution(a.restaurantId(), b.restaurantName(), a.voteCount() + b.voteCount())))
+                .values().stream()
+                .sorted(ORDER)
+                .toList();
+    }
 }
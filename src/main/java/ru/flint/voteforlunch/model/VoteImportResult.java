@@ -0,0 +1,16 @@
+package ru.flint.voteforlunch.model;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk vote import. Only the first rejected rows are reported in {@code errors}.
+ */
+public record VoteImportResult(
+        long rows,
+        long imported,
+        long rejected,
+        List<RowError> errors) {
+
+    public record RowError(long line, String message) {
+    }
+}
@@ -0,0 +1,13 @@
+package ru.flint.voteforlunch.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One page of the votes of a user, the latest first. The next page starts before {@code nextCursor},
+ * which is {@code null} on the last page.
+ */
+public record VotePage(
+        List<Vote> votes,
+        LocalDate nextCursor) {
+}
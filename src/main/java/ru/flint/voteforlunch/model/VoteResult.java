@@ -0,0 +1,39 @@
+package ru.flint.voteforlunch.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Final votes count of a restaurant on a closed voting date. The restaurant name is copied, so the results do not
+ * change when restaurants are renamed or deleted.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(
+        name = "vote_result",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uc_vote_result_date_restaurant_id", columnNames = {"RESULT_DATE", "RESTAURANT_ID"})
+        })
+@ToString(callSuper = true)
+public class VoteResult extends AbstractEntity {
+    @Column(name = "result_date", nullable = false)
+    private LocalDate resultDate;
+
+    @Column(name = "restaurant_id", nullable = false)
+    private Long restaurantId;
+
+    @Column(name = "restaurant_name", nullable = false)
+    private String restaurantName;
+
+    @Column(name = "vote_count", nullable = false)
+    private long voteCount;
+}
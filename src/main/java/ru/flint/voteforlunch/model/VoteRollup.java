@@ -0,0 +1,45 @@
+package ru.flint.voteforlunch.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Votes count of a restaurant over a week or a month: the sum of its {@link VoteResult}s on the closed dates
+ * of the period.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(
+        name = "vote_rollup",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uc_vote_rollup_period_restaurant_id",
+                        columnNames = {"PERIOD_TYPE", "PERIOD_START", "RESTAURANT_ID"})
+        })
+@ToString(callSuper = true)
+public class VoteRollup extends AbstractEntity {
+    @Enumerated(EnumType.STRING)
+    @Column(name = "period_type", nullable = false, length = 8)
+    private RollupPeriod periodType;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(name = "restaurant_id", nullable = false)
+    private Long restaurantId;
+
+    @Column(name = "restaurant_name", nullable = false)
+    private String restaurantName;
+
+    @Column(name = "vote_count", nullable = false)
+    private long voteCount;
+}
@@ -0,0 +1,25 @@
+package ru.flint.voteforlunch.repository;
+
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flint.voteforlunch.model.MenuArchive;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@Transactional(readOnly = true)
+public interface MenuArchiveRepository extends JpaRepository<MenuArchive, Long> {
+    @EntityGraph(attributePaths = "restaurant")
+    @Query("select m from MenuArchive m where m.menuDate = :date order by m.restaurant.name asc")
+    List<MenuArchive> findAllWithRestaurantsOnDate(@Param("date") LocalDate date);
+
+    @EntityGraph(attributePaths = {"restaurant", "menuItemSet", "menuItemSet.dish"})
+    @Query("select m from MenuArchive m where m.id = :id")
+    Optional<MenuArchive> findAllByIdWithAllData(@Param("id") Long id);
+}
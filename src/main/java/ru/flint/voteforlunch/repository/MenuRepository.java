@@ -3,6 +3,7 @@ package ru.flint.voteforlunch.repository;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -10,6 +11,7 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.flint.voteforlunch.model.Menu;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,4 +24,44 @@ public interface MenuRepository extends JpaRepository<Menu,Long> {
     @EntityGraph(attributePaths = {"restaurant","menuItemSet","menuItemSet.dish"})
     @Query("select m from Menu m where m.id = :id")
     Optional<Menu> findAllByIdWithAllData(@Param("id") Long id);
+
+    @Query("select m.menuDate from Menu m where m.id = :id")
+    Optional<LocalDate> findMenuDate(@Param("id") long id);
+
+    @Query("""
+            select m.restaurant.id from Menu m
+            where m.menuDate = :from
+            and not exists (select t.id from Menu t where t.menuDate = :to and t.restaurant = m.restaurant)
+            """)
+    List<Long> findRestaurantsToCopy(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Copies the menus of the restaurants on a date to another date, without the items.
+     */
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            INSERT INTO menu (id, menu_date, restaurant_id)
+            SELECT NEXT VALUE FOR menu_seq, CAST(:to AS DATE), restaurant_id
+            FROM menu
+            WHERE menu_date = :from AND restaurant_id IN (:restaurantIds)
+            """)
+    int copyMenus(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                  @Param("restaurantIds") Collection<Long> restaurantIds);
+
+    /**
+     * Copies the items of the menus of the restaurants on a date into their menus on another date.
+     */
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            INSERT INTO menu_item (id, menu_id, dish_id, price)
+            SELECT NEXT VALUE FOR menu_item_seq, t.id, i.dish_id, i.price
+            FROM menu s
+            JOIN menu_item i ON i.menu_id = s.id
+            JOIN menu t ON t.restaurant_id = s.restaurant_id AND t.menu_date = :to
+            WHERE s.menu_date = :from AND s.restaurant_id IN (:restaurantIds)
+            """)
+    int copyMenuItems(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                      @Param("restaurantIds") Collection<Long> restaurantIds);
 }
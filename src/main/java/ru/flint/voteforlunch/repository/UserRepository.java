@@ -2,15 +2,23 @@ package ru.flint.voteforlunch.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import ru.flint.voteforlunch.model.User;
+import ru.flint.voteforlunch.model.UserCredentials;
+import ru.flint.voteforlunch.model.UserProfile;
 
-import java.util.Optional;
+import java.util.List;
 
 @Repository
 @Transactional(readOnly = true)
 public interface UserRepository extends JpaRepository<User,Long> {
-    @Query("SELECT u FROM User u WHERE u.email = LOWER(:email)")
-    Optional<User> findByEmailIgnoreCase(String email);
+    @Query("SELECT new ru.flint.voteforlunch.model.UserCredentials(u.id, u.email, u.password, r) " +
+            "FROM User u JOIN u.roles r WHERE u.email = LOWER(:email)")
+    List<UserCredentials> getCredentials(@Param("email") String email);
+
+    @Query("SELECT new ru.flint.voteforlunch.model.UserProfile(u.id, u.email, u.firstName, u.lastName, u.enabled, r) " +
+            "FROM User u LEFT JOIN u.roles r WHERE u.id = :id")
+    List<UserProfile> getProfile(@Param("id") long id);
 }
@@ -0,0 +1,37 @@
+package ru.flint.voteforlunch.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flint.voteforlunch.model.VoteArchive;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+@Transactional(readOnly = true)
+public interface VoteArchiveRepository extends JpaRepository<VoteArchive, Long> {
+    @Query("select v from VoteArchive v where v.user.id = :userId order by v.voteDate desc, v.voteTime desc")
+    @EntityGraph(attributePaths = {"restaurant"})
+    List<VoteArchive> getAllForUser(@Param("userId") long userId);
+
+    @Query("select v from VoteArchive v where v.user.id = :userId order by v.voteDate desc, v.voteTime desc")
+    @EntityGraph(attributePaths = {"restaurant"})
+    List<VoteArchive> getFirstPageForUser(@Param("userId") long userId, Pageable pageable);
+
+    @Query("""
+            select v from VoteArchive v
+            where v.user.id = :userId and v.voteDate < :before
+            order by v.voteDate desc, v.voteTime desc
+            """)
+    @EntityGraph(attributePaths = {"restaurant"})
+    List<VoteArchive> getPageForUserBefore(@Param("userId") long userId, @Param("before") LocalDate before, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"restaurant"})
+    Optional<VoteArchive> getByIdAndUserId(long id, long userId);
+}
@@ -1,15 +1,18 @@
 package ru.flint.voteforlunch.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import ru.flint.voteforlunch.model.Ballot;
 import ru.flint.voteforlunch.model.Vote;
 import ru.flint.voteforlunch.model.VoteDistribution;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,13 +23,55 @@ public interface VoteRepository extends JpaRepository<Vote,Long> {
     @EntityGraph(attributePaths = {"restaurant"})
     List<Vote> getAllForUser(@Param("userId") long userId);
 
+    // a user has one vote per date, so the date is the key of the keyset pagination
+    @Query("select v from Vote v where v.user.id = :userId order by v.voteDate desc, v.voteTime desc")
+    @EntityGraph(attributePaths = {"restaurant"})
+    List<Vote> getFirstPageForUser(@Param("userId") long userId, Pageable pageable);
+
+    @Query("""
+            select v from Vote v
+            where v.user.id = :userId and v.voteDate < :before
+            order by v.voteDate desc, v.voteTime desc
+            """)
+    @EntityGraph(attributePaths = {"restaurant"})
+    List<Vote> getPageForUserBefore(@Param("userId") long userId, @Param("before") LocalDate before, Pageable pageable);
+
     @EntityGraph(attributePaths = {"restaurant"})
     Optional<Vote> getByIdAndUserId(long id, long userId);
 
+    @EntityGraph(attributePaths = {"restaurant"})
     Optional<Vote> getByVoteDateAndUserId(LocalDate date, long userId);
 
     @Query(name = "get_votes_distribution_on_date_for_all_restaurants", nativeQuery = true)
     List<VoteDistribution> getDistributionOnDate(@Param("distDate") LocalDate distDate);
 
+    @Query("select new ru.flint.voteforlunch.model.Ballot(v.user.id, v.restaurant.id, v.voteTime) from Vote v where v.voteDate = :date")
+    List<Ballot> getBallotsOnDate(@Param("date") LocalDate date);
+
     long deleteByVoteDateAndUserId(LocalDate voteDate, long userId);
+
+    /**
+     * Inserts the vote of the user on the date or changes the existing one, if it is changed not later than
+     * {@code timeConstraint} and is not older than the stored one, so changes committed out of order keep the latest.
+     * Returns the id of the written vote, empty when the change was refused.
+     */
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            SELECT id FROM FINAL TABLE (
+                MERGE INTO vote AS v
+                USING (VALUES (CAST(:userId AS BIGINT), CAST(:voteDate AS DATE), CAST(:restaurantId AS BIGINT), CAST(:voteTime AS TIME)))
+                    AS s (user_id, vote_date, restaurant_id, vote_time)
+                ON v.user_id = s.user_id AND v.vote_date = s.vote_date
+                WHEN MATCHED AND s.vote_time >= v.vote_time AND s.vote_time <= CAST(:timeConstraint AS TIME) THEN
+                    UPDATE SET restaurant_id = s.restaurant_id, vote_time = s.vote_time
+                WHEN NOT MATCHED THEN
+                    INSERT (id, user_id, vote_date, restaurant_id, vote_time)
+                    VALUES (NEXT VALUE FOR vote_seq, s.user_id, s.vote_date, s.restaurant_id, s.vote_time)
+            )
+            """)
+    Optional<Long> upsert(@Param("userId") long userId,
+                          @Param("voteDate") LocalDate voteDate,
+                          @Param("restaurantId") long restaurantId,
+                          @Param("voteTime") LocalTime voteTime,
+                          @Param("timeConstraint") LocalTime timeConstraint);
 }
@@ -0,0 +1,60 @@
+package ru.flint.voteforlunch.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.model.VoteResult;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@Transactional(readOnly = true)
+public interface VoteResultRepository extends JpaRepository<VoteResult, Long> {
+    @Query("""
+            select new ru.flint.voteforlunch.model.VoteDistribution(r.restaurantId, r.restaurantName, r.voteCount)
+            from VoteResult r
+            where r.resultDate = :date
+            order by r.voteCount desc, r.restaurantName
+            """)
+    List<VoteDistribution> getDistributionOnDate(@Param("date") LocalDate date);
+
+    /**
+     * Writes the results of the date from the votes, unless they are written already.
+     */
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            INSERT INTO vote_result (id, result_date, restaurant_id, restaurant_name, vote_count)
+            SELECT NEXT VALUE FOR vote_result_seq, CAST(:date AS DATE), c.id, c.name, c.vote_count
+            FROM (SELECT r.id, r.name, COUNT(v.id) AS vote_count
+                  FROM restaurant r
+                  LEFT JOIN vote v ON v.restaurant_id = r.id AND v.vote_date = :date
+                  WHERE NOT EXISTS (SELECT 1 FROM vote_result WHERE result_date = :date)
+                  GROUP BY r.id, r.name) c
+            """)
+    int finalizeDate(@Param("date") LocalDate date);
+
+    @Query("""
+            select new ru.flint.voteforlunch.model.VoteDistribution(r.restaurantId, r.restaurantName, r.voteCount)
+            from VoteResult r
+            where r.resultDate in :dates
+            """)
+    List<VoteDistribution> getDistributionOnDates(@Param("dates") Collection<LocalDate> dates);
+
+    @Query("""
+            select distinct v.voteDate from Vote v
+            where v.voteDate < :before and v.voteDate not in (select r.resultDate from VoteResult r)
+            """)
+    List<LocalDate> getUnfinalizedDates(@Param("before") LocalDate before);
+
+    @Modifying
+    @Transactional
+    @Query("delete from VoteResult r where r.resultDate = :date")
+    int deleteByResultDate(@Param("date") LocalDate date);
+}
@@ -0,0 +1,45 @@
+package ru.flint.voteforlunch.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flint.voteforlunch.model.RollupPeriod;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.model.VoteRollup;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@Transactional(readOnly = true)
+public interface VoteRollupRepository extends JpaRepository<VoteRollup, Long> {
+    @Query("""
+            select new ru.flint.voteforlunch.model.VoteDistribution(r.restaurantId, r.restaurantName, r.voteCount)
+            from VoteRollup r
+            where r.periodType = :periodType and r.periodStart in :starts
+            """)
+    List<VoteDistribution> getDistribution(@Param("periodType") RollupPeriod periodType,
+                                           @Param("starts") Collection<LocalDate> starts);
+
+    /**
+     * Adds the results of the date, multiplied by {@code sign}, to the rollups of the period starting on {@code start}.
+     */
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            MERGE INTO vote_rollup AS t
+            USING (SELECT restaurant_id, restaurant_name, vote_count FROM vote_result WHERE result_date = :date) AS s
+            ON t.period_type = :periodType AND t.period_start = :start AND t.restaurant_id = s.restaurant_id
+            WHEN MATCHED THEN
+                UPDATE SET vote_count = t.vote_count + :sign * s.vote_count, restaurant_name = s.restaurant_name
+            WHEN NOT MATCHED THEN
+                INSERT (id, period_type, period_start, restaurant_id, restaurant_name, vote_count)
+                VALUES (NEXT VALUE FOR vote_rollup_seq, :periodType, :start, s.restaurant_id, s.restaurant_name, :sign * s.vote_count)
+            """)
+    int addResults(@Param("periodType") String periodType, @Param("start") LocalDate start,
+                   @Param("date") LocalDate date, @Param("sign") int sign);
+}
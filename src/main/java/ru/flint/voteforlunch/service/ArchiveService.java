@@ -0,0 +1,165 @@
+package ru.flint.voteforlunch.service;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.flint.voteforlunch.util.exceptions.IllegalRequestDataException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot/cold tiers of votes and menus.
+ * <p>
+ * Votes and menus older than {@code archive.horizon-days} are moved by a background job from the {@code vote},
+ * {@code menu} and {@code menu_item} tables into their {@code *_archive} counterparts, chunk by chunk, each chunk in
+ * its own transaction. The hot-path queries only see the hot tables, the vote history, menus of past dates and the
+ * export read both tiers. Votes are archived only after the results of their dates are written, the distribution of
+ * a closed date is read from {@link VoteResultService} and does not need the votes any more.
+ */
+@Service
+@Timed("service.method")
+@Slf4j
+public class ArchiveService {
+    private static final String LAST_VOTE_ID = "SELECT MAX(id) FROM (SELECT id FROM vote WHERE vote_date < ? ORDER BY id LIMIT ?)";
+    private static final String ARCHIVE_VOTES = """
+            INSERT INTO vote_archive (id, user_id, restaurant_id, vote_date, vote_time)
+            SELECT id, user_id, restaurant_id, vote_date, vote_time FROM vote WHERE vote_date < ? AND id <= ?
+            """;
+    private static final String DELETE_VOTES = "DELETE FROM vote WHERE vote_date < ? AND id <= ?";
+
+    private static final String LAST_MENU_ID = "SELECT MAX(id) FROM (SELECT id FROM menu WHERE menu_date < ? ORDER BY id LIMIT ?)";
+    private static final String ARCHIVE_MENUS = """
+            INSERT INTO menu_archive (id, menu_date, restaurant_id)
+            SELECT id, menu_date, restaurant_id FROM menu WHERE menu_date < ? AND id <= ?
+            """;
+    private static final String ARCHIVE_MENU_ITEMS = """
+            INSERT INTO menu_item_archive (id, menu_id, dish_id, price)
+            SELECT i.id, i.menu_id, i.dish_id, i.price FROM menu_item i
+            JOIN menu m ON m.id = i.menu_id
+            WHERE m.menu_date < ? AND m.id <= ?
+            """;
+    private static final String DELETE_MENU_ITEMS = """
+            DELETE FROM menu_item WHERE menu_id IN (SELECT id FROM menu WHERE menu_date < ? AND id <= ?)
+            """;
+    private static final String DELETE_MENUS = "DELETE FROM menu WHERE menu_date < ? AND id <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VoteResultService results;
+    private final Clock clock;
+    private final int horizonDays;
+    private final int chunkSize;
+    private final Duration interval;
+    private ScheduledExecutorService archiver;
+
+    public ArchiveService(JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate,
+                          VoteResultService results,
+                          Clock clock,
+                          @Value("${archive.horizon-days:365}") int horizonDays,
+                          @Value("${archive.chunk-size:1000}") int chunkSize,
+                          @Value("${archive.interval:1h}") Duration interval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.results = results;
+        this.clock = clock;
+        this.horizonDays = horizonDays;
+        this.chunkSize = chunkSize;
+        this.interval = interval;
+    }
+
+    @PostConstruct
+    void start() {
+        if (interval.isZero() || interval.isNegative()) {
+            // rows are archived only by explicit archive() calls
+            return;
+        }
+        log.info("Start archiver: horizon = {} days, interval = {}", horizonDays, interval);
+        archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        archiver.scheduleWithFixedDelay(this::archiveSafely, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (archiver != null) {
+            archiver.shutdownNow();
+        }
+    }
+
+    /**
+     * Votes and menus before this date belong to the cold tier.
+     */
+    public LocalDate getHorizon() {
+        return LocalDate.now(clock).minusDays(horizonDays);
+    }
+
+    public boolean isArchived(LocalDate date) {
+        return date.isBefore(getHorizon());
+    }
+
+    /**
+     * Rejects a write of menus on an archived date. The archive tables have no unique (restaurant, date) constraint,
+     * so a menu written into the hot table for a date archived already would not be checked against the archived ones.
+     */
+    public void checkMenusNotArchived(LocalDate date) {
+        if (isArchived(date)) {
+            throw new IllegalRequestDataException(String.format("Menus on %s are archived and can not be changed", date));
+        }
+    }
+
+    /**
+     * Moves the votes and menus before the horizon to the archive tables. Returns the number of moved votes and menus.
+     */
+    public int archive() {
+        LocalDate horizon = getHorizon();
+        log.info("Archive votes and menus before {}", horizon);
+        results.backfill();
+        int votes = moveChunks(horizon, LAST_VOTE_ID, ARCHIVE_VOTES, DELETE_VOTES);
+        int menus = moveChunks(horizon, LAST_MENU_ID, ARCHIVE_MENUS, ARCHIVE_MENU_ITEMS, DELETE_MENU_ITEMS, DELETE_MENUS);
+        log.info("Archived {} votes and {} menus", votes, menus);
+        return votes + menus;
+    }
+
+    // every statement takes the horizon and the last id of the chunk, the first one moves the counted rows
+    private int moveChunks(LocalDate horizon, String lastIdQuery, String... statements) {
+        int moved = 0;
+        Integer chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> {
+                Long lastId = jdbcTemplate.queryForObject(lastIdQuery, Long.class, horizon, chunkSize);
+                if (lastId == null) {
+                    return 0;
+                }
+                int rows = jdbcTemplate.update(statements[0], horizon, lastId);
+                for (int i = 1; i < statements.length; i++) {
+                    jdbcTemplate.update(statements[i], horizon, lastId);
+                }
+                return rows;
+            });
+            moved += chunk == null ? 0 : chunk;
+        } while (chunk != null && chunk > 0);
+        return moved;
+    }
+
+    private void archiveSafely() {
+        try {
+            archive();
+        } catch (RuntimeException e) {
+            log.error("Archiving failed, retry in {}", interval, e);
+        }
+    }
+}
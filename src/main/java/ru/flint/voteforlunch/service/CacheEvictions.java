@@ -0,0 +1,51 @@
+package ru.flint.voteforlunch.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static ru.flint.voteforlunch.util.TransactionUtil.afterCommit;
+
+/**
+ * Evictions of the Spring caches for changes made in a transaction.
+ * <p>
+ * An entry is evicted now and once more after the commit, so a value of the old state read and cached concurrently
+ * in between does not survive. A {@code @CacheEvict} runs inside the transaction, so it is not enough for caches that
+ * are read outside it.
+ */
+@Component
+@Slf4j
+public class CacheEvictions {
+    private final CacheManager cacheManager;
+
+    public CacheEvictions(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public void evict(Object key, String... cacheNames) {
+        log.debug("Evict {} from {}", key, List.of(cacheNames));
+        nowAndAfterCommit(cache -> cache.evict(key), cacheNames);
+    }
+
+    public void clear(String... cacheNames) {
+        log.debug("Clear {}", List.of(cacheNames));
+        nowAndAfterCommit(Cache::clear, cacheNames);
+    }
+
+    private void nowAndAfterCommit(Consumer<Cache> eviction, String... cacheNames) {
+        Runnable evict = () -> {
+            for (String cacheName : cacheNames) {
+                Cache cache = cacheManager.getCache(cacheName);
+                if (cache != null) {
+                    eviction.accept(cache);
+                }
+            }
+        };
+        evict.run();
+        afterCommit(evict);
+    }
+}
@@ -0,0 +1,172 @@
+package ru.flint.voteforlunch.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.flint.voteforlunch.model.Menu;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Loads the caches before the first requests of the day hit the database together.
+ * <p>
+ * At {@code cache-warmer.menus-at} the menus of the next business day are loaded into the {@code menus} cache and
+ * each of them with its items into the {@code menu} cache. At {@code cache-warmer.distribution-at}, the start of
+ * voting, the live tally of today is loaded and the final distribution of yesterday is written and cached. Days in
+ * {@code cache-warmer.days-off} are not business days. The duration of the last warm-up is published as the
+ * {@code cache.warmup} timer and the number of loaded entries as the {@code cache.warmup.entries} gauge, both tagged
+ * with the warmed {@code target}.
+ */
+@Component
+@Slf4j
+public class CacheWarmer {
+    private static final String MENUS = "menus";
+    private static final String DISTRIBUTION = "distribution";
+
+    private final MenuService menuService;
+    private final VoteService voteService;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+    private final boolean enabled;
+    private final LocalTime menusAt;
+    private final LocalTime distributionAt;
+    private final Set<DayOfWeek> daysOff;
+    private final AtomicInteger menuEntries = new AtomicInteger();
+    private final AtomicInteger distributionEntries = new AtomicInteger();
+    private ScheduledExecutorService warmer;
+
+    public CacheWarmer(MenuService menuService,
+                       VoteService voteService,
+                       MeterRegistry meterRegistry,
+                       Clock clock,
+                       @Value("${cache-warmer.enabled:true}") boolean enabled,
+                       @Value("${cache-warmer.menus-at:23:50}") LocalTime menusAt,
+                       @Value("${cache-warmer.distribution-at:00:01}") LocalTime distributionAt,
+                       @Value("${cache-warmer.days-off:SATURDAY,SUNDAY}") Set<DayOfWeek> daysOff) {
+        this.menuService = menuService;
+        this.voteService = voteService;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.menusAt = menusAt;
+        this.distributionAt = distributionAt;
+        this.daysOff = daysOff.isEmpty() ? EnumSet.noneOf(DayOfWeek.class) : EnumSet.copyOf(daysOff);
+        Gauge.builder("cache.warmup.entries", menuEntries, AtomicInteger::get)
+                .description("Cache entries loaded by the last warm-up")
+                .tag("target", MENUS)
+                .register(meterRegistry);
+        Gauge.builder("cache.warmup.entries", distributionEntries, AtomicInteger::get)
+                .description("Cache entries loaded by the last warm-up")
+                .tag("target", DISTRIBUTION)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            // caches are warmed only by explicit calls
+            return;
+        }
+        log.info("Start cache warmer: menus at {}, distribution at {}", menusAt, distributionAt);
+        warmer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-warmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleDaily(menusAt, () -> warmMenus(nextBusinessDay(LocalDate.now(clock))));
+        scheduleDaily(distributionAt, () -> warmDistribution(LocalDate.now(clock)));
+    }
+
+    @PreDestroy
+    void stop() {
+        if (warmer != null) {
+            warmer.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads the menus of the date and every one of them with its items. Returns the number of loaded entries.
+     */
+    public int warmMenus(LocalDate date) {
+        log.info("Warm up menus on {}", date);
+        return record(MENUS, menuEntries, () -> {
+            List<Menu> menus = menuService.getAllWithRestaurants(date);
+            menus.forEach(menu -> menuService.getByIdWithAllData(menu.getId()));
+            return 1 + menus.size();
+        });
+    }
+
+    /**
+     * Loads the live tally of the date and the final distribution of the day before. Returns the number of loaded
+     * entries.
+     */
+    public int warmDistribution(LocalDate date) {
+        log.info("Warm up votes distribution on {}", date);
+        return record(DISTRIBUTION, distributionEntries, () -> {
+            voteService.getDistributionOnDate(date);
+            voteService.getDistributionOnDate(date.minusDays(1));
+            return 2;
+        });
+    }
+
+    LocalDate nextBusinessDay(LocalDate date) {
+        LocalDate next = date.plusDays(1);
+        // with every day off the next day is taken
+        while (daysOff.size() < DayOfWeek.values().length && daysOff.contains(next.getDayOfWeek())) {
+            next = next.plusDays(1);
+        }
+        return next;
+    }
+
+    Duration delayUntil(LocalTime time) {
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        ZonedDateTime next = now.with(time);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        return Duration.between(now, next);
+    }
+
+    private int record(String target, AtomicInteger entries, Supplier<Integer> warmUp) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        int loaded = warmUp.get();
+        long nanos = sample.stop(Timer.builder("cache.warmup")
+                .description("Duration of the cache warm-up")
+                .tag("target", target)
+                .register(meterRegistry));
+        entries.set(loaded);
+        log.info("Warmed up {}: {} entries in {} ms", target, loaded, TimeUnit.NANOSECONDS.toMillis(nanos));
+        return loaded;
+    }
+
+    // rescheduled after every run, so the time of day holds over daylight saving changes
+    private void scheduleDaily(LocalTime time, Runnable warmUp) {
+        warmer.schedule(() -> {
+            try {
+                warmUp.run();
+            } catch (Exception e) {
+                log.error("Cache warm-up failed", e);
+            } finally {
+                scheduleDaily(time, warmUp);
+            }
+        }, delayUntil(time).toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
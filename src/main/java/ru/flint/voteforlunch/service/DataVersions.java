@@ -0,0 +1,75 @@
+package ru.flint.voteforlunch.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the menus and of the votes of each date, the entity tags of the reads.
+ * <p>
+ * A version only grows. It is bumped for a date when its data change, and for all dates at once when a change reaches
+ * every date, e.g. a renamed dish. Callers bump after the commit, so a reader that got a version reads at least the
+ * data of that version. Versions live in memory, so the tags also carry the start time of the application and no tag
+ * of an earlier run matches.
+ */
+@Component
+public class DataVersions {
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final Versions menus = new Versions();
+    private final Versions votes = new Versions();
+
+    public void menusChanged(LocalDate date) {
+        menus.bump(date);
+    }
+
+    public void allMenusChanged() {
+        menus.bumpAll();
+    }
+
+    public void votesChanged(LocalDate date) {
+        votes.bump(date);
+    }
+
+    public void allVotesChanged() {
+        votes.bumpAll();
+    }
+
+    public String menusTag(LocalDate date) {
+        return "menus-" + epoch + "-" + menus.version(date);
+    }
+
+    /**
+     * Tag of a single menu. Its date is not known before the menu is read, so a change of any date changes it.
+     */
+    public String menuTag() {
+        return "menu-" + epoch + "-" + menus.changes.get();
+    }
+
+    public String votesTag(LocalDate date) {
+        return "votes-" + epoch + "-" + votes.version(date);
+    }
+
+    private static class Versions {
+        private final AtomicLong all = new AtomicLong();
+        private final AtomicLong changes = new AtomicLong();
+        private final Map<LocalDate, AtomicLong> dates = new ConcurrentHashMap<>();
+
+        private void bump(LocalDate date) {
+            dates.computeIfAbsent(date, d -> new AtomicLong()).incrementAndGet();
+            changes.incrementAndGet();
+        }
+
+        private void bumpAll() {
+            all.incrementAndGet();
+            changes.incrementAndGet();
+        }
+
+        private String version(LocalDate date) {
+            AtomicLong version = dates.get(date);
+            return all.get() + "." + (version == null ? 0 : version.get());
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package ru.flint.voteforlunch.service;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -11,16 +11,22 @@ import ru.flint.voteforlunch.repository.DishRepository;
 
 import java.util.List;
 
+import static ru.flint.voteforlunch.util.TransactionUtil.afterCommit;
 import static ru.flint.voteforlunch.util.ValidationUtil.checkExist;
 import static ru.flint.voteforlunch.util.ValidationUtil.checkFound;
 
 @Service
+@Timed("service.method")
 @Slf4j
 public class DishService {
     private final DishRepository repository;
+    private final DataVersions versions;
+    private final CacheEvictions cacheEvictions;
 
-    public DishService(DishRepository repository) {
+    public DishService(DishRepository repository, DataVersions versions, CacheEvictions cacheEvictions) {
         this.repository = repository;
+        this.versions = versions;
+        this.cacheEvictions = cacheEvictions;
     }
 
     public Dish getById(long id){
@@ -32,22 +38,32 @@ public class DishService {
         log.info("Get all dishes");
         return repository.findAll(Sort.by("name"));
     }
-    @CacheEvict(cacheNames = {"menu", "menus"}, allEntries = true)
+    @Transactional
     public Dish create(Dish dish){
         log.info("Create dish: {}", dish);
-        return repository.save(dish);
+        Dish created = repository.saveAndFlush(dish);
+        allMenusChanged();
+        return created;
     }
-    @CacheEvict(cacheNames = {"menu", "menus"}, allEntries = true)
+    @Transactional
     public void delete(long id){
         log.info("Delete dish with id = {}", id);
         repository.deleteById(id);
+        allMenusChanged();
     }
     @Transactional
-    @CacheEvict(cacheNames = {"menu", "menus"}, allEntries = true)
     public Dish update(long id,@NotNull Dish dish){
         log.info("Update dish with id = {}", id);
         checkExist(repository.existsById(id),id, Dish.class);
         dish.setId(id);
-        return repository.save(dish);
+        Dish updated = repository.save(dish);
+        allMenusChanged();
+        return updated;
+    }
+
+    // a dish is a part of menus of any date
+    private void allMenusChanged() {
+        cacheEvictions.clear("menu", "menus", "menuResponse", "menusResponse");
+        afterCommit(versions::allMenusChanged);
     }
 }
@@ -0,0 +1,146 @@
+package ru.flint.voteforlunch.service;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flint.voteforlunch.model.Menu;
+import ru.flint.voteforlunch.model.MenuItem;
+import ru.flint.voteforlunch.repository.MenuRepository;
+import ru.flint.voteforlunch.util.exceptions.IllegalRequestDataException;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static ru.flint.voteforlunch.util.TransactionUtil.afterCommit;
+
+/**
+ * Publishing of many menus at once, e.g. the menus of all restaurants every morning.
+ * <p>
+ * The menus and their items are inserted with plain JDBC in batches of {@code menu.publish.batch-size} rows, all of
+ * them in one transaction, without the dirty checking and the cascades of the persistence context. The menus are
+ * expected to be validated and their restaurants and dishes checked already, see
+ * {@link ru.flint.voteforlunch.web.mapper.MenuMapper#toEntities}. A menu of a restaurant already having one on the
+ * date or a menu on an archived date fails the whole publishing.
+ * <p>
+ * As most restaurants repeat their menus, the menus of a date can also be copied to another date with two
+ * {@code INSERT ... SELECT} statements, one for the menus and one for their items.
+ */
+@Service
+@Timed("service.method")
+@Slf4j
+public class MenuPublishService {
+    private static final String INSERT_MENU =
+            "INSERT INTO menu (id, menu_date, restaurant_id) VALUES (NEXT VALUE FOR menu_seq, ?, ?)";
+    private static final String INSERT_MENU_ITEM =
+            "INSERT INTO menu_item (id, menu_id, dish_id, price) VALUES (NEXT VALUE FOR menu_item_seq, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MenuRepository repository;
+    private final ArchiveService archiveService;
+    private final CacheEvictions cacheEvictions;
+    private final DataVersions versions;
+    private final int batchSize;
+
+    public MenuPublishService(JdbcTemplate jdbcTemplate,
+                              MenuRepository repository,
+                              ArchiveService archiveService,
+                              CacheEvictions cacheEvictions,
+                              DataVersions versions,
+                              @Value("${menu.publish.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.repository = repository;
+        this.archiveService = archiveService;
+        this.cacheEvictions = cacheEvictions;
+        this.versions = versions;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Inserts the menus with their items and returns them with the ids set.
+     */
+    @Transactional
+    public List<Menu> publish(List<Menu> menus) {
+        log.info("Publish {} menus", menus.size());
+        Set<LocalDate> dates = menus.stream().map(Menu::getMenuDate).collect(Collectors.toSet());
+        dates.forEach(archiveService::checkMenusNotArchived);
+        insertMenus(menus);
+        List<MenuItem> items = menus.stream().flatMap(menu -> menu.getMenuItemSet().stream()).toList();
+        jdbcTemplate.batchUpdate(INSERT_MENU_ITEM, items, batchSize, (statement, item) -> {
+            statement.setLong(1, item.getMenu().getId());
+            statement.setLong(2, item.getDish().getId());
+            statement.setInt(3, item.getPrice());
+        });
+        dates.forEach(this::menusChanged);
+        log.info("Published {} menus with {} items", menus.size(), items.size());
+        return menus;
+    }
+
+    /**
+     * Copies the menus of a date with their items to another date, of all restaurants or only of the given ones.
+     * Restaurants having a menu on the target date already are skipped. Returns the number of copied menus.
+     *
+     * @param restaurantIds restaurants to copy the menus of, all of them when it is {@code null}
+     */
+    @Transactional
+    public int copy(LocalDate from, LocalDate to, Collection<Long> restaurantIds) {
+        log.info("Copy menus from {} to {} of restaurants {}", from, to, restaurantIds == null ? "all" : restaurantIds);
+        if (from.equals(to)) {
+            throw new IllegalRequestDataException("Menus can not be copied to the same date");
+        }
+        if (archiveService.isArchived(from)) {
+            throw new IllegalRequestDataException(String.format("Menus on %s are archived", from));
+        }
+        archiveService.checkMenusNotArchived(to);
+        List<Long> copied = repository.findRestaurantsToCopy(from, to).stream()
+                .filter(id -> restaurantIds == null || restaurantIds.contains(id))
+                .toList();
+        if (copied.isEmpty()) {
+            return 0;
+        }
+        int menus = repository.copyMenus(from, to, copied);
+        int items = repository.copyMenuItems(from, to, copied);
+        menusChanged(to);
+        log.info("Copied {} menus with {} items from {} to {}", menus, items, from, to);
+        return menus;
+    }
+
+    // the generated ids of every batch are read back in the order of the rows
+    private void insertMenus(List<Menu> menus) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_MENU, new String[]{"ID"})) {
+                for (int from = 0; from < menus.size(); from += batchSize) {
+                    List<Menu> batch = menus.subList(from, Math.min(from + batchSize, menus.size()));
+                    for (Menu menu : batch) {
+                        statement.setDate(1, Date.valueOf(menu.getMenuDate()));
+                        statement.setLong(2, menu.getRestaurant().getId());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        for (Menu menu : batch) {
+                            keys.next();
+                            menu.setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    // only the menus of the date change, a menu by id is not cached before it exists
+    private void menusChanged(LocalDate date) {
+        cacheEvictions.evict(date, "menus", "menusResponse");
+        afterCommit(() -> versions.menusChanged(date));
+    }
+}
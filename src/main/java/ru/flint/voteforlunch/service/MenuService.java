@@ -1,73 +1,103 @@
 package ru.flint.voteforlunch.service;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.flint.voteforlunch.model.Menu;
+import ru.flint.voteforlunch.model.MenuArchive;
+import ru.flint.voteforlunch.repository.MenuArchiveRepository;
 import ru.flint.voteforlunch.repository.MenuRepository;
 
 import java.time.LocalDate;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import static ru.flint.voteforlunch.util.TransactionUtil.afterCommit;
 import static ru.flint.voteforlunch.util.ValidationUtil.checkExist;
 import static ru.flint.voteforlunch.util.ValidationUtil.checkFound;
 
 @Service
+@Timed("service.method")
 @Slf4j
 public class MenuService {
     private final MenuRepository repository;
+    private final MenuArchiveRepository archive;
+    private final ArchiveService archiveService;
+    private final DataVersions versions;
+    private final CacheEvictions cacheEvictions;
 
-    public MenuService(MenuRepository repository) {
+    public MenuService(MenuRepository repository, MenuArchiveRepository archive, ArchiveService archiveService,
+                       DataVersions versions, CacheEvictions cacheEvictions) {
         this.repository = repository;
+        this.archive = archive;
+        this.archiveService = archiveService;
+        this.versions = versions;
+        this.cacheEvictions = cacheEvictions;
     }
 
-    @Caching(
-            put = {@CachePut(key = "#result.id", value = "menu")},
-            evict = {@CacheEvict(key = "#result.menuDate", value = "menus")}
-    )
+    @Transactional
+    @CachePut(key = "#result.id", value = "menu")
     public Menu create(Menu menu) {
         log.info("Create menu: {}", menu);
-        return repository.save(menu);
+        archiveService.checkMenusNotArchived(menu.getMenuDate());
+        Menu created = repository.saveAndFlush(menu);
+        menusChanged(created.getMenuDate());
+        return created;
     }
 
     @Cacheable(key = "#date", value = "menus")
     public List<Menu> getAllWithRestaurants(@NotNull LocalDate date) {
         log.info("Get all menus with restaurants on {}", date);
-        return repository.findAllWithRestaurantsOnDate(date);
+        List<Menu> menus = repository.findAllWithRestaurantsOnDate(date);
+        if (!archiveService.isArchived(date)) {
+            return menus;
+        }
+        // the menus of the date may be archived partly
+        return Stream.concat(menus.stream(), archive.findAllWithRestaurantsOnDate(date).stream().map(MenuArchive::toMenu))
+                .sorted(Comparator.comparing(menu -> menu.getRestaurant().getName()))
+                .toList();
     }
     @Transactional
-    @Caching(
-            put = {@CachePut(key = "#result.id", value = "menu")},
-            evict = {@CacheEvict(key = "#result.menuDate", value = "menus")}
-    )
+    @CachePut(key = "#result.id", value = "menu")
     public Menu update(long id,Menu menu){
         log.info("Update menu with id = {}", menu.getId());
-        checkExist(repository.existsById(id),id, Menu.class);
+        Optional<LocalDate> previousDate = repository.findMenuDate(id);
+        checkExist(previousDate.isPresent(), id, Menu.class);
+        archiveService.checkMenusNotArchived(menu.getMenuDate());
         menu.setId(id);
         Menu updatedMenu = repository.save(menu);
+        cacheEvictions.evict(id, "menuResponse");
+        menusChanged(previousDate.get());
+        menusChanged(updatedMenu.getMenuDate());
         return getByIdWithAllData(Objects.requireNonNull(updatedMenu.getId()));
     }
 
-    @Caching(
-            evict = {
-                    @CacheEvict(key = "#id",value = "menu"),
-                    @CacheEvict(value = "menus",allEntries = true)
-            }
-    )
+    @Transactional
     public void delete(long id){
         log.info("Delete menu with id = {}", id);
+        Optional<LocalDate> date = repository.findMenuDate(id);
         repository.deleteById(id);
+        cacheEvictions.evict(id, "menu", "menuResponse");
+        date.ifPresent(this::menusChanged);
     }
 
     @Cacheable(key = "#id",value = "menu")
     public Menu getByIdWithAllData(long id){
         log.info("Get menu (including properties) with id = {}", id);
-        return checkFound(repository.findAllByIdWithAllData(id),id,Menu.class);
+        return checkFound(repository.findAllByIdWithAllData(id)
+                .or(() -> archive.findAllByIdWithAllData(id).map(MenuArchive::toMenuWithItems)), id, Menu.class);
+    }
+
+    // the version is bumped after the caches are evicted for good, so no reader gets the old menus under the new tag
+    private void menusChanged(LocalDate date) {
+        cacheEvictions.evict(date, "menus", "menusResponse");
+        afterCommit(() -> versions.menusChanged(date));
     }
 }
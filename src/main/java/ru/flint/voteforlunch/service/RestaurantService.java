@@ -1,5 +1,6 @@
 package ru.flint.voteforlunch.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
@@ -9,16 +10,22 @@ import ru.flint.voteforlunch.repository.RestaurantRepository;
 
 import java.util.List;
 
+import static ru.flint.voteforlunch.util.TransactionUtil.afterCommit;
 import static ru.flint.voteforlunch.util.ValidationUtil.checkExist;
 import static ru.flint.voteforlunch.util.ValidationUtil.checkFound;
 
 @Service
+@Timed("service.method")
 @Slf4j
 public class RestaurantService {
     private final RestaurantRepository repository;
+    private final VoteTally voteTally;
+    private final DataVersions versions;
 
-    public RestaurantService(RestaurantRepository repository) {
+    public RestaurantService(RestaurantRepository repository, VoteTally voteTally, DataVersions versions) {
         this.repository = repository;
+        this.voteTally = voteTally;
+        this.versions = versions;
     }
 
     public Restaurant getById(long id){
@@ -33,12 +40,15 @@ public class RestaurantService {
 
     public Restaurant create(Restaurant restaurant){
         log.info("Create restaurant: {}", restaurant);
-        return repository.save(restaurant);
+        Restaurant created = repository.saveAndFlush(restaurant);
+        afterCommit(this::changed);
+        return created;
     }
 
     public void delete(long id){
         log.info("Delete restaurant with id = {}",id);
         repository.deleteById(id);
+        afterCommit(this::changed); // votes for the restaurant are deleted by cascade
     }
 
     @Transactional
@@ -46,6 +56,15 @@ public class RestaurantService {
         log.info("Update restaurant with id = {}", restaurant.getId());
         checkExist(repository.existsById(id),id, Restaurant.class);
         restaurant.setId(id);
-        return repository.save(restaurant);
+        Restaurant updated = repository.save(restaurant);
+        afterCommit(this::changed);
+        return updated;
+    }
+
+    // restaurant names are part of the menus and of the votes distributions of every date
+    private void changed() {
+        voteTally.invalidate();
+        versions.allMenusChanged();
+        versions.allVotesChanged();
     }
 }
@@ -1,33 +1,55 @@
 package ru.flint.voteforlunch.service;
 
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import ru.flint.voteforlunch.model.User;
+import ru.flint.voteforlunch.model.UserProfile;
 import ru.flint.voteforlunch.repository.UserRepository;
+import ru.flint.voteforlunch.web.security.AuthenticationCache;
 
 import java.util.List;
 
+import static ru.flint.voteforlunch.util.TransactionUtil.afterCommit;
+import static ru.flint.voteforlunch.util.ValidationUtil.checkExist;
 import static ru.flint.voteforlunch.util.ValidationUtil.checkFound;
 
 @Service
+@Timed("service.method")
 @Slf4j
 public class UserService {
     private final UserRepository repository;
+    private final VoteTally voteTally;
+    private final AuthenticationCache authenticationCache;
+    private final DataVersions versions;
+    private final CacheEvictions cacheEvictions;
 
-    public UserService(UserRepository repository){
+    public UserService(UserRepository repository, VoteTally voteTally, AuthenticationCache authenticationCache,
+                       DataVersions versions, CacheEvictions cacheEvictions){
         this.repository = repository;
+        this.voteTally = voteTally;
+        this.authenticationCache = authenticationCache;
+        this.versions = versions;
+        this.cacheEvictions = cacheEvictions;
     }
     public User create(@NotNull User user) {
         log.info("Create user: {}",user);
-        return repository.save(user);
+        return repository.saveAndFlush(user);
     }
 
     public void delete(long id) {
         log.info("Delete user with id = {}",id);
         repository.deleteById(id);
+        authenticationCache.evictUser(id);
+        cacheEvictions.evict(id, "userProfile");
+        afterCommit(() -> { // votes of the user are deleted by cascade
+            voteTally.invalidate();
+            versions.allVotesChanged();
+        });
     }
 
     public User getById(long id) {
@@ -35,6 +57,15 @@ public class UserService {
         return checkFound(repository.findById(id),id, User.class);
     }
 
+    // the columns of the profile, one row per role, instead of the user entity
+    @Cacheable(key = "#id", value = "userProfile")
+    public UserProfile getProfile(long id) {
+        log.info("Get profile of user with id = {}", id);
+        List<UserProfile> rows = repository.getProfile(id);
+        checkExist(!rows.isEmpty(), id, User.class);
+        return UserProfile.of(rows);
+    }
+
     public List<User> getAllSorted() {
         log.info("Get all users");
         return repository.findAll(Sort.by("email"));
@@ -47,6 +78,8 @@ public class UserService {
         user.setId(id);
         user.setPassword(storedUser.getPassword()); // do not update the password, it must be updated in a separate way
         user.setRoles(storedUser.getRoles()); // do not update roles, it must be updated in a separate way
+        authenticationCache.evictUser(id);
+        cacheEvictions.evict(id, "userProfile");
         return repository.save(user);
     }
 }
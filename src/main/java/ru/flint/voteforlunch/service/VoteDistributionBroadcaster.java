@@ -0,0 +1,155 @@
+package ru.flint.voteforlunch.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.web.json.JsonUtil;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes the votes distribution of a date to Server-Sent Events subscribers.
+ * <p>
+ * Vote changes only mark their date as changed. A single publisher thread pushes the changed dates at most
+ * {@code max-pushes-per-second} times a second, so a burst of votes results in one push. The distribution is computed
+ * and serialized once per push and written to every subscriber of the date. Subscribers are asynchronous requests,
+ * no thread is held per connection. The distribution is read from {@link VoteService}, so a closed date is served
+ * from its final results and the cache like any other read.
+ */
+@Component
+@Slf4j
+public class VoteDistributionBroadcaster {
+    public static final String EVENT_NAME = "distribution";
+
+    // looked up on use, VoteService notifies the broadcaster of changes
+    private final ObjectProvider<VoteService> voteService;
+    private final int maxPushesPerSecond;
+    private final Duration timeout;
+    private final ConcurrentMap<LocalDate, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final Set<LocalDate> changed = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService publisher;
+
+    public VoteDistributionBroadcaster(ObjectProvider<VoteService> voteService,
+                                       @Value("${vote.distribution-stream.max-pushes-per-second:2}") int maxPushesPerSecond,
+                                       @Value("${vote.distribution-stream.timeout:30m}") Duration timeout) {
+        this.voteService = voteService;
+        this.maxPushesPerSecond = maxPushesPerSecond;
+        this.timeout = timeout;
+    }
+
+    @PostConstruct
+    void start() {
+        if (maxPushesPerSecond <= 0) {
+            // changes are pushed only by explicit push() calls
+            return;
+        }
+        long pushInterval = 1000L / maxPushesPerSecond;
+        log.info("Start votes distribution publisher: push interval = {} ms", pushInterval);
+        publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vote-distribution-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher.scheduleWithFixedDelay(this::pushSafely, pushInterval, pushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (publisher != null) {
+            publisher.shutdownNow();
+        }
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+
+    /**
+     * Subscribes to the distribution on the date. The current distribution is sent right away.
+     */
+    public SseEmitter subscribe(LocalDate date) {
+        log.info("Subscribe to votes distribution on {}", date);
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        subscribers.compute(date, (d, emitters) -> {
+            Set<SseEmitter> result = emitters == null ? ConcurrentHashMap.newKeySet() : emitters;
+            result.add(emitter);
+            return result;
+        });
+        emitter.onCompletion(() -> unsubscribe(date, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> unsubscribe(date, emitter));
+        send(date, emitter, JsonUtil.writeValue(distributionOn(date)));
+        return emitter;
+    }
+
+    /**
+     * Marks the distribution on the date as changed, subscribers get it with the next push.
+     */
+    public void changed(LocalDate date) {
+        if (subscribers.containsKey(date)) {
+            changed.add(date);
+        }
+    }
+
+    public int getSubscriberCount(LocalDate date) {
+        Set<SseEmitter> emitters = subscribers.get(date);
+        return emitters == null ? 0 : emitters.size();
+    }
+
+    /**
+     * Pushes every changed distribution. Called by the publisher thread and by tests.
+     */
+    public void push() {
+        for (LocalDate date : changed) {
+            changed.remove(date);
+            Set<SseEmitter> emitters = subscribers.get(date);
+            if (emitters == null || emitters.isEmpty()) {
+                continue;
+            }
+            String distribution = JsonUtil.writeValue(distributionOn(date));
+            log.debug("Push votes distribution on {} to {} subscribers", date, emitters.size());
+            emitters.forEach(emitter -> send(date, emitter, distribution));
+        }
+    }
+
+    private void pushSafely() {
+        try {
+            push();
+        } catch (RuntimeException e) {
+            log.error("Votes distribution push failed", e);
+        }
+    }
+
+    private List<VoteDistribution> distributionOn(LocalDate date) {
+        return voteService.getObject().getDistributionOnDate(date);
+    }
+
+    private void send(LocalDate date, SseEmitter emitter, String distribution) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(distribution));
+        } catch (IOException | IllegalStateException e) {
+            // the client has gone, the container completes the request
+            log.debug("Drop votes distribution subscriber on {}: {}", date, e.getMessage());
+            unsubscribe(date, emitter);
+        }
+    }
+
+    private void unsubscribe(LocalDate date, SseEmitter emitter) {
+        subscribers.computeIfPresent(date, (d, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
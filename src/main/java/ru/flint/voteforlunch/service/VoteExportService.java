@@ -0,0 +1,129 @@
+package ru.flint.voteforlunch.service;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import ru.flint.voteforlunch.util.exceptions.IllegalRequestDataException;
+import ru.flint.voteforlunch.web.json.JsonUtil;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static java.time.format.DateTimeFormatter.ISO_LOCAL_TIME;
+
+/**
+ * Export of all votes of a date range for reporting.
+ * <p>
+ * Votes are read row by row from a forward-only JDBC cursor and written straight into the output, no entities and
+ * no lists are built, so memory does not depend on the number of votes. The archived votes are exported first and
+ * the hot ones after them, each by its own query, so neither the database nor the service merges the two. NDJSON
+ * rows have the format of the {@link VoteImportService import}.
+ */
+@Service
+@Timed("service.method")
+@Slf4j
+public class VoteExportService {
+    // archived dates are older than the hot ones, so the archive followed by the hot votes is ordered by date,
+    // except for votes imported into an archived date until the archive job moves them
+    private static final String SELECT_ARCHIVED_VOTES = """
+            SELECT user_id, restaurant_id, vote_date, vote_time FROM vote_archive
+            WHERE vote_date BETWEEN ? AND ?
+            ORDER BY vote_date, user_id
+            """;
+    private static final String SELECT_VOTES = """
+            SELECT user_id, restaurant_id, vote_date, vote_time FROM vote
+            WHERE vote_date BETWEEN ? AND ?
+            ORDER BY vote_date, user_id
+            """;
+
+    public enum Format {
+        CSV("text/csv"),
+        NDJSON("application/x-ndjson");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static Format of(String format) {
+            for (Format value : values()) {
+                if (value.name().equalsIgnoreCase(format)) {
+                    return value;
+                }
+            }
+            throw new IllegalRequestDataException(String.format("Export format %s is not supported, use csv or ndjson", format));
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VoteExportService(DataSource dataSource, @Value("${vote.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    public void checkRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalRequestDataException(String.format("Date from = %s is after date to = %s", from, to));
+        }
+    }
+
+    public void exportVotes(LocalDate from, LocalDate to, Format format, OutputStream output) {
+        log.info("Export votes from {} to {} as {}", from, to, format);
+        checkRange(from, to);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        long[] rows = {0};
+        try {
+            if (format == Format.CSV) {
+                writer.write("userId,restaurantId,date,time\n");
+            }
+            for (String query : new String[]{SELECT_ARCHIVED_VOTES, SELECT_VOTES}) {
+                jdbcTemplate.query(query, resultSet -> {
+                    write(writer, format, resultSet);
+                    rows[0]++;
+                }, Date.valueOf(from), Date.valueOf(to));
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Votes exported: {} rows", rows[0]);
+    }
+
+    private static void write(Writer writer, Format format, ResultSet resultSet) throws SQLException {
+        VoteExportRow row = new VoteExportRow(
+                resultSet.getLong("user_id"),
+                resultSet.getLong("restaurant_id"),
+                resultSet.getObject("vote_date", LocalDate.class),
+                resultSet.getObject("vote_time", LocalTime.class));
+        try {
+            writer.write(format == Format.CSV
+                    ? row.userId() + "," + row.restaurantId() + "," + row.date() + "," + ISO_LOCAL_TIME.format(row.time())
+                    : JsonUtil.writeValue(row));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record VoteExportRow(long userId, long restaurantId, LocalDate date, LocalTime time) {
+    }
+}
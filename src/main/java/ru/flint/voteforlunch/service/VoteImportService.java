@@ -0,0 +1,272 @@
+package ru.flint.voteforlunch.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.flint.voteforlunch.model.Restaurant;
+import ru.flint.voteforlunch.model.VoteImportResult;
+import ru.flint.voteforlunch.model.VoteImportResult.RowError;
+import ru.flint.voteforlunch.repository.RestaurantRepository;
+import ru.flint.voteforlunch.web.json.JsonUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Date;
+import java.sql.Time;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static ru.flint.voteforlunch.util.ValidationUtil.getRootCause;
+
+/**
+ * Bulk import of votes collected offline, e.g. on kiosks.
+ * <p>
+ * Rows are read one by one from NDJSON, validated and written in JDBC batches, so memory does not depend on the
+ * number of rows. Votes follow the rules of {@link VoteService}: a user has one vote per date, a new vote is always
+ * accepted, a vote can be changed until the time constraint and the latest vote wins. Archived dates are closed for
+ * the import. A row breaking the rules is reported and skipped, the rest of the import goes on.
+ */
+@Service
+@Timed("service.method")
+@Slf4j
+public class VoteImportService {
+    private static final String MERGE_VOTE = """
+            MERGE INTO vote AS v
+            USING (VALUES (CAST(? AS BIGINT), CAST(? AS DATE), CAST(? AS BIGINT), CAST(? AS TIME)))
+                AS s (user_id, vote_date, restaurant_id, vote_time)
+            ON v.user_id = s.user_id AND v.vote_date = s.vote_date
+            WHEN MATCHED AND s.vote_time >= v.vote_time AND s.vote_time <= CAST(? AS TIME) THEN
+                UPDATE SET restaurant_id = s.restaurant_id, vote_time = s.vote_time
+            WHEN NOT MATCHED THEN
+                INSERT (id, user_id, vote_date, restaurant_id, vote_time)
+                VALUES (NEXT VALUE FOR vote_seq, s.user_id, s.vote_date, s.restaurant_id, s.vote_time)
+            """;
+    private static final String EXISTING_USERS = "SELECT id FROM users WHERE id IN (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RestaurantRepository restaurantRepository;
+    private final VoteTally tally;
+    private final VoteDistributionBroadcaster broadcaster;
+    private final DataVersions versions;
+    private final VoteResultService results;
+    private final ArchiveService archiveService;
+    private final CacheEvictions cacheEvictions;
+    private final Clock clock;
+    private final LocalTime timeConstraint;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public VoteImportService(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             RestaurantRepository restaurantRepository,
+                             VoteTally tally,
+                             VoteDistributionBroadcaster broadcaster,
+                             DataVersions versions,
+                             VoteResultService results,
+                             ArchiveService archiveService,
+                             CacheEvictions cacheEvictions,
+                             Clock clock,
+                             @Value("${vote.time.constraint}") LocalTime timeConstraint,
+                             @Value("${vote.import.batch-size:1000}") int batchSize,
+                             @Value("${vote.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.restaurantRepository = restaurantRepository;
+        this.tally = tally;
+        this.broadcaster = broadcaster;
+        this.versions = versions;
+        this.results = results;
+        this.archiveService = archiveService;
+        this.cacheEvictions = cacheEvictions;
+        this.clock = clock;
+        this.timeConstraint = timeConstraint;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public VoteImportResult importVotes(BufferedReader reader) {
+        log.info("Import votes");
+        Import votes = new Import(restaurantRepository.findAll().stream()
+                .map(Restaurant::getId)
+                .collect(Collectors.toSet()));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                votes.add(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            votes.flush();
+            results.refresh(votes.affectedDates);
+            votes.affectedDates.forEach(this::changed);
+        }
+        // rows rejected by the database are reported when their batch is written
+        votes.errors.sort(Comparator.comparingLong(RowError::line));
+        VoteImportResult result = new VoteImportResult(votes.rows, votes.imported, votes.rejected, votes.errors);
+        log.info("Votes imported: {} rows, {} imported, {} rejected", result.rows(), result.imported(), result.rejected());
+        return result;
+    }
+
+    private void changed(LocalDate date) {
+        if (tally.isLive(date)) {
+            tally.invalidate();
+        }
+        cacheEvictions.evict(date, "voteDistribution", "voteDistributionResponse");
+        broadcaster.changed(date);
+        versions.votesChanged(date);
+    }
+
+    private record VoteImportRow(Long userId, Long restaurantId, LocalDate date, LocalTime time) {
+    }
+
+    private record Row(long line, VoteImportRow vote) {
+        private Object[] args(LocalTime timeConstraint) {
+            return new Object[]{vote.userId(), Date.valueOf(vote.date()), vote.restaurantId(), Time.valueOf(vote.time()),
+                    Time.valueOf(timeConstraint)};
+        }
+    }
+
+    /**
+     * State of one import: the current batch and the counters.
+     */
+    private class Import {
+        private final Set<Long> restaurantIds;
+        private final List<Row> batch = new ArrayList<>(batchSize);
+        private final Set<LocalDate> affectedDates = new HashSet<>();
+        private final List<RowError> errors = new ArrayList<>();
+        private final LocalDateTime now = LocalDateTime.now(clock);
+        private final LocalDate horizon = archiveService.getHorizon();
+        private long lines;
+        private long rows;
+        private long imported;
+        private long rejected;
+
+        private Import(Set<Long> restaurantIds) {
+            this.restaurantIds = restaurantIds;
+        }
+
+        private void add(String json) {
+            long line = ++lines;
+            if (json.isBlank()) {
+                return;
+            }
+            rows++;
+            VoteImportRow vote;
+            try {
+                vote = JsonUtil.readValue(json, VoteImportRow.class);
+            } catch (IllegalArgumentException e) {
+                Throwable cause = getRootCause(e);
+                reject(line, "Invalid JSON: " + (cause instanceof JsonProcessingException jsonException
+                        ? jsonException.getOriginalMessage() : cause.getMessage()));
+                return;
+            }
+            String error = validate(vote);
+            if (error != null) {
+                reject(line, error);
+                return;
+            }
+            batch.add(new Row(line, vote));
+            if (batch.size() == batchSize) {
+                flush();
+            }
+        }
+
+        private String validate(VoteImportRow vote) {
+            if (vote.userId() == null || vote.restaurantId() == null || vote.date() == null || vote.time() == null) {
+                return "userId, restaurantId, date and time are required";
+            }
+            if (!restaurantIds.contains(vote.restaurantId())) {
+                return String.format("Restaurant with id = %s not found", vote.restaurantId());
+            }
+            if (LocalDateTime.of(vote.date(), vote.time()).isAfter(now)) {
+                return String.format("Vote on %s %s is in the future", vote.date(), vote.time());
+            }
+            if (vote.date().isBefore(horizon)) {
+                return String.format("Vote on %s is before the archive horizon %s", vote.date(), horizon);
+            }
+            return null;
+        }
+
+        private void flush() {
+            rejectUnknownUsers();
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Object[]> args = batch.stream().map(row -> row.args(timeConstraint)).toList();
+            int[] counts;
+            try {
+                counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(MERGE_VOTE, args));
+            } catch (DataAccessException e) {
+                log.warn("Vote import batch failed, importing row by row: {}", getRootCause(e).getMessage());
+                counts = new int[batch.size()];
+                for (int i = 0; i < batch.size(); i++) {
+                    counts[i] = writeRow(batch.get(i), args.get(i));
+                }
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                Row row = batch.get(i);
+                if (counts[i] > 0) {
+                    imported++;
+                    affectedDates.add(row.vote().date());
+                } else if (counts[i] == 0) {
+                    reject(row.line(), String.format(
+                            "Vote of userId = %s on %s is not changed: a later vote exists or the change is after %s",
+                            row.vote().userId(), row.vote().date(), timeConstraint));
+                }
+            }
+            batch.clear();
+        }
+
+        // the users of the batch are checked with one query, so a batch does not fail on a missing one
+        private void rejectUnknownUsers() {
+            Set<Long> userIds = batch.stream().map(row -> row.vote().userId()).collect(Collectors.toSet());
+            if (userIds.isEmpty()) {
+                return;
+            }
+            String placeholders = String.join(",", Collections.nCopies(userIds.size(), "?"));
+            Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList(
+                    String.format(EXISTING_USERS, placeholders), Long.class, userIds.toArray()));
+            batch.removeIf(row -> {
+                if (existing.contains(row.vote().userId())) {
+                    return false;
+                }
+                reject(row.line(), String.format("User with id = %s not found", row.vote().userId()));
+                return true;
+            });
+        }
+
+        // returns -1 when the row is rejected by the database
+        private int writeRow(Row row, Object[] args) {
+            try {
+                return jdbcTemplate.update(MERGE_VOTE, args);
+            } catch (DataAccessException e) {
+                reject(row.line(), getRootCause(e).getMessage());
+                return -1;
+            }
+        }
+
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package ru.flint.voteforlunch.service;
+
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.flint.voteforlunch.model.RollupPeriod;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.repository.VoteRepository;
+import ru.flint.voteforlunch.repository.VoteResultRepository;
+import ru.flint.voteforlunch.repository.VoteRollupRepository;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Final results of closed voting dates.
+ * <p>
+ * Votes are only cast for today, so the distribution of an earlier date can not change any more. It is written once
+ * into the {@code vote_result} table and read from there, without aggregating the votes again. Results are written
+ * for all closed dates with votes on startup, on the first range read of a new day and for a date missed since then
+ * on its first read. A date without votes is answered from the votes and nothing is written for it. The votes of
+ * a date are {@link VoteTally#settle settled} before its results are written, so late votes are not missed.
+ * <p>
+ * When the results of a date are written, they are also added to the rollups of its week and month, so the results
+ * of a date range are read from a few rollup rows per restaurant: one per full month, one per full week outside them
+ * and one per remaining date.
+ */
+@Service
+@Timed("service.method")
+@Slf4j
+public class VoteResultService {
+    private final VoteResultRepository repository;
+    private final VoteRepository voteRepository;
+    private final VoteRollupRepository rollupRepository;
+    private final VoteTally tally;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheEvictions cacheEvictions;
+    private final Clock clock;
+
+    // all closed dates before this one have results
+    private volatile LocalDate finalizedBefore = LocalDate.MIN;
+
+    public VoteResultService(VoteResultRepository repository,
+                             VoteRepository voteRepository,
+                             VoteRollupRepository rollupRepository,
+                             VoteTally tally,
+                             TransactionTemplate transactionTemplate,
+                             CacheEvictions cacheEvictions,
+                             Clock clock) {
+        this.repository = repository;
+        this.voteRepository = voteRepository;
+        this.rollupRepository = rollupRepository;
+        this.tally = tally;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheEvictions = cacheEvictions;
+        this.clock = clock;
+    }
+
+    public boolean isClosed(LocalDate date) {
+        return date.isBefore(LocalDate.now(clock));
+    }
+
+    public List<VoteDistribution> getDistributionOnDate(LocalDate date) {
+        log.info("Get votes results on {}", date);
+        List<VoteDistribution> results = repository.getDistributionOnDate(date);
+        if (!results.isEmpty()) {
+            return results;
+        }
+        tally.settle(date);
+        List<VoteDistribution> votes = voteRepository.getDistributionOnDate(date);
+        if (votes.stream().allMatch(distribution -> distribution.voteCount() == 0)) {
+            // any past date can be requested, only dates with votes get results
+            return votes.stream().sorted(VoteDistribution.ORDER).toList();
+        }
+        finalizeDate(date);
+        return repository.getDistributionOnDate(date);
+    }
+
+    /**
+     * Sums up the results of the closed dates in the range, later dates are ignored.
+     */
+    public List<VoteDistribution> getDistributionInRange(LocalDate from, LocalDate to) {
+        log.info("Get votes results from {} to {}", from, to);
+        LocalDate today = LocalDate.now(clock);
+        if (finalizedBefore.isBefore(today)) {
+            backfill();
+        }
+        LocalDate end = to.isBefore(today) ? to : today.minusDays(1);
+        Map<RollupPeriod, List<LocalDate>> periodStarts = new EnumMap<>(RollupPeriod.class);
+        List<LocalDate> dates = new ArrayList<>();
+        LocalDate date = from;
+        while (!date.isAfter(end)) {
+            RollupPeriod period = findFullPeriod(date, end);
+            if (period == null) {
+                dates.add(date);
+                date = date.plusDays(1);
+            } else {
+                periodStarts.computeIfAbsent(period, p -> new ArrayList<>()).add(date);
+                date = period.next(date);
+            }
+        }
+        Stream<VoteDistribution> rollups = periodStarts.entrySet().stream()
+                .flatMap(starts -> rollupRepository.getDistribution(starts.getKey(), starts.getValue()).stream());
+        Stream<VoteDistribution> results = dates.isEmpty()
+                ? Stream.empty()
+                : repository.getDistributionOnDates(dates).stream();
+        return VoteDistribution.sum(Stream.concat(rollups, results));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        LocalDate today = LocalDate.now(clock);
+        log.info("Backfill votes results before {}", today);
+        tally.settle(today.minusDays(1));
+        List<LocalDate> dates = repository.getUnfinalizedDates(today);
+        dates.forEach(this::finalizeDate);
+        finalizedBefore = today;
+        log.info("Backfilled votes results on {} dates", dates.size());
+    }
+
+    /**
+     * Writes the results of dates whose votes were changed, e.g. by an import, again and evicts their cached
+     * distributions.
+     */
+    public void refresh(Collection<LocalDate> dates) {
+        dates.stream().filter(this::isClosed).forEach(date -> {
+            log.info("Refresh votes results on {}", date);
+            transactionTemplate.executeWithoutResult(status -> {
+                addToRollups(date, -1);
+                repository.deleteByResultDate(date);
+                writeResults(date);
+                cacheEvictions.evict(date, "voteDistribution", "voteDistributionResponse");
+            });
+        });
+    }
+
+    private void finalizeDate(LocalDate date) {
+        log.info("Finalize votes results on {}", date);
+        try {
+            transactionTemplate.executeWithoutResult(status -> writeResults(date));
+        } catch (DataIntegrityViolationException e) {
+            // the date or another one of the same rollup period is finalized concurrently, now it is committed
+            log.debug("Votes results on {} are finalized concurrently, repeat", date);
+            transactionTemplate.executeWithoutResult(status -> writeResults(date));
+        }
+    }
+
+    private void writeResults(LocalDate date) {
+        if (repository.finalizeDate(date) > 0) {
+            addToRollups(date, 1);
+        }
+    }
+
+    private void addToRollups(LocalDate date, int sign) {
+        for (RollupPeriod period : RollupPeriod.values()) {
+            rollupRepository.addResults(period.name(), period.start(date), date, sign);
+        }
+    }
+
+    // the longest full period starting on the date, which does not overlap the next full period of a longer kind
+    private static RollupPeriod findFullPeriod(LocalDate date, LocalDate end) {
+        LocalDate limit = end.plusDays(1);
+        for (RollupPeriod period : RollupPeriod.values()) {
+            if (period.start(date).equals(date) && !period.next(date).isAfter(limit)) {
+                return period;
+            }
+            LocalDate nextStart = period.next(period.start(date));
+            if (!period.next(nextStart).isAfter(limit) && nextStart.isBefore(limit)) {
+                limit = nextStart;
+            }
+        }
+        return null;
+    }
+}
@@ -1,98 +1,305 @@
 package ru.flint.voteforlunch.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.flint.voteforlunch.util.exceptions.IllegalRequestDataException;
 import ru.flint.voteforlunch.util.exceptions.VoteTimeConstraintException;
+import ru.flint.voteforlunch.model.Restaurant;
 import ru.flint.voteforlunch.model.Vote;
+import ru.flint.voteforlunch.model.VoteArchive;
 import ru.flint.voteforlunch.model.VoteDistribution;
-import ru.flint.voteforlunch.repository.RestaurantRepository;
-import ru.flint.voteforlunch.repository.UserRepository;
+import ru.flint.voteforlunch.model.VotePage;
+import ru.flint.voteforlunch.repository.VoteArchiveRepository;
 import ru.flint.voteforlunch.repository.VoteRepository;
 
 import java.time.Clock;
 import java.time.LocalTime;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import static ru.flint.voteforlunch.util.TransactionUtil.afterCommit;
 import static ru.flint.voteforlunch.util.ValidationUtil.checkFound;
+import static ru.flint.voteforlunch.util.ValidationUtil.getRootCause;
 
 @Service
+@Timed("service.method")
 @Slf4j
 public class VoteService {
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final String VOTE_UNIQUE_CONSTRAINT = "uc_vote_user_id_vote_date";
+    private static final Comparator<Vote> HISTORY_ORDER = Comparator
+            .comparing(Vote::getVoteDate).thenComparing(Vote::getVoteTime).reversed();
+
     private final VoteRepository repository;
-    private final UserRepository userRepository;
-    private final RestaurantRepository restaurantRepository;
+    private final VoteArchiveRepository archive;
+    private final VoteTally tally;
+    private final VoteWriteBehind writeBehind;
+    private final VoteDistributionBroadcaster broadcaster;
+    private final DataVersions versions;
+    private final VoteResultService results;
     private final Clock clock;
     private final LocalTime timeConstraint;
+    private final Counter cutoffRejections;
+    private final Counter conflicts;
 
     public VoteService(VoteRepository repository,
-                       UserRepository userRepository,
-                       RestaurantRepository restaurantRepository,
+                       VoteArchiveRepository archive,
+                       VoteTally tally,
+                       VoteWriteBehind writeBehind,
+                       VoteDistributionBroadcaster broadcaster,
+                       DataVersions versions,
+                       VoteResultService results,
                        Clock clock,
+                       MeterRegistry meterRegistry,
                        @Value("${vote.time.constraint}") LocalTime timeConstraint) {
 
         this.repository = repository;
-        this.userRepository = userRepository;
-        this.restaurantRepository = restaurantRepository;
+        this.archive = archive;
+        this.tally = tally;
+        this.writeBehind = writeBehind;
+        this.broadcaster = broadcaster;
+        this.versions = versions;
+        this.results = results;
         this.clock = clock;
         this.timeConstraint = timeConstraint;
+        this.cutoffRejections = Counter.builder("vote.cutoff.rejections")
+                .description("Vote changes and withdrawals rejected after the time constraint")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("vote.conflicts")
+                .description("Concurrent first votes of a user, the losing upsert is repeated")
+                .register(meterRegistry);
     }
     public Vote get(long id, long userId) {
         log.info("Get vote with id = {}, userId = {}", id, userId);
-        return checkFound(repository.getByIdAndUserId(id, userId), id, Vote.class);
+        return checkFound(repository.getByIdAndUserId(id, userId)
+                .or(() -> archive.getByIdAndUserId(id, userId).map(VoteArchive::toVote)), id, Vote.class);
     }
 
     public List<Vote> getAllForUser(long userId) {
         log.info("Get all votes for userId = {}", userId);
-        return repository.getAllForUser(userId);
+        return merge(repository.getAllForUser(userId), archive.getAllForUser(userId), Long.MAX_VALUE);
     }
 
-    @Transactional
-    @CacheEvict(key = "#result.voteDate", value = "voteDistribution")
+    /**
+     * Page of the votes of the user, the latest first, continuing before the cursor of the previous page.
+     */
+    public VotePage getPageForUser(long userId, LocalDate cursor, int limit) {
+        log.info("Get votes page for userId = {} before {}, limit {}", userId, cursor, limit);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalRequestDataException(String.format("Limit must be between 1 and %d", MAX_PAGE_SIZE));
+        }
+        // one more vote tells whether there is a next page
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Vote> votes = cursor == null
+                ? repository.getFirstPageForUser(userId, pageable)
+                : repository.getPageForUserBefore(userId, cursor, pageable);
+        if (votes.size() <= limit) {
+            // the page goes on in the cold tier
+            List<VoteArchive> archived = cursor == null
+                    ? archive.getFirstPageForUser(userId, pageable)
+                    : archive.getPageForUserBefore(userId, cursor, pageable);
+            votes = merge(votes, archived, limit + 1L);
+        }
+        if (votes.size() <= limit) {
+            return new VotePage(votes, null);
+        }
+        List<Vote> page = votes.subList(0, limit);
+        return new VotePage(page, page.get(limit - 1).getVoteDate());
+    }
+
+    /**
+     * Writes the vote with a single upsert, the time constraint is checked by the statement itself. Not transactional:
+     * the upsert commits on its own, so it can be repeated when a concurrent first vote of the same user wins the insert.
+     * When a newer change of the user is committed already, nothing is written and the stored vote is returned.
+     */
     public Vote saveAndReturnWithDetails(long restaurantId, long userId) {
+        return tally.vote(now -> save(restaurantId, userId, now));
+    }
+
+    private Vote save(long restaurantId, long userId, LocalDateTime now) {
         log.info("Try to save vote. RestaurantID = {}, UserId = {}", restaurantId, userId);
-        LocalDate votingDate = LocalDate.now(clock);
-        Vote vote = repository.getByVoteDateAndUserId(votingDate, userId).orElseGet(() -> {
-            Vote newVote = new Vote();
-            newVote.setUser(userRepository.getReferenceById(userId));
-            newVote.setVoteDate(votingDate);
-            return newVote;
-        });
+        LocalDate votingDate = now.toLocalDate();
+        LocalTime votingTime = now.toLocalTime();
+        Restaurant restaurant = checkFound(tally.findRestaurant(restaurantId), restaurantId, Restaurant.class);
 
-        LocalTime votingTime = LocalTime.now(clock);
-        if (!vote.isNew() && votingTime.isAfter(timeConstraint)) {
-            throw new VoteTimeConstraintException(String.format("You can only change your vote until %s", timeConstraint));
+        Optional<Long> written = upsert(userId, votingDate, restaurantId, votingTime);
+        if (written.isEmpty()) {
+            checkChangeAllowed(votingTime);
+            // a newer change of the same user is committed already, this one is superseded by it
+            log.info("Vote of userId = {} is superseded by a newer one", userId);
+            return repository.getByVoteDateAndUserId(votingDate, userId).orElseThrow(() -> new IllegalRequestDataException(
+                    String.format("Vote of userId = %s was changed concurrently, repeat the request", userId)));
         }
+        afterCommit(() -> {
+            tally.register(votingDate, userId, restaurantId, votingTime);
+            broadcaster.changed(votingDate);
+            versions.votesChanged(votingDate);
+        });
 
-        vote.setRestaurant(restaurantRepository.getReferenceById(restaurantId));
+        Vote vote = new Vote();
+        vote.setId(written.get());
+        vote.setRestaurant(restaurant);
+        vote.setVoteDate(votingDate);
         vote.setVoteTime(votingTime);
-        vote = repository.save(vote);
         log.info("Vote saved. RestaurantID = {}, UserId = {}", restaurantId, userId);
         return vote;
     }
 
-    @CacheEvict(value = "voteDistribution", allEntries = true)
+    /**
+     * Write-behind counterpart of {@link #saveAndReturnWithDetails}: the vote is checked against the live tally
+     * and queued for a batched write, so the request does not touch the database. The returned vote has no id yet.
+     */
+    public Vote accept(long restaurantId, long userId) {
+        return tally.vote(now -> accept(restaurantId, userId, now));
+    }
+
+    private Vote accept(long restaurantId, long userId, LocalDateTime now) {
+        log.info("Try to accept vote. RestaurantID = {}, UserId = {}", restaurantId, userId);
+        LocalDate votingDate = now.toLocalDate();
+        LocalTime votingTime = now.toLocalTime();
+        Restaurant restaurant = checkFound(tally.findRestaurant(restaurantId), restaurantId, Restaurant.class);
+        // after the time constraint only a first vote is accepted, checked and registered atomically by the tally
+        if (!tally.tryRegister(votingDate, userId, restaurantId, votingTime, !votingTime.isAfter(timeConstraint))) {
+            throw timeConstraintViolation();
+        }
+        try {
+            writeBehind.enqueueVote(userId, restaurantId, votingDate, votingTime);
+        } catch (RuntimeException e) {
+            // the registered ballot is not going to be written
+            tally.invalidate();
+            throw e;
+        }
+        broadcaster.changed(votingDate);
+        versions.votesChanged(votingDate);
+        Vote vote = new Vote();
+        vote.setRestaurant(restaurant);
+        vote.setVoteDate(votingDate);
+        vote.setVoteTime(votingTime);
+        log.info("Vote accepted. RestaurantID = {}, UserId = {}", restaurantId, userId);
+        return vote;
+    }
+
+    @Transactional
     public void delete(long userId) {
         log.info("Try to delete vote of userId={}", userId);
-        if (LocalTime.now(clock).isAfter(timeConstraint)) {
-            throw new VoteTimeConstraintException(String.format("You can only change your vote until %s", timeConstraint));
-        }
+        checkChangeAllowed(LocalTime.now(clock));
 
         LocalDate date = LocalDate.now(clock);
         if (repository.deleteByVoteDateAndUserId(date, userId) == 0) {
             throw new IllegalRequestDataException(String.format("Vote of userId = %s for date = %s not found", userId, date));
         }
+        afterCommit(() -> {
+            tally.withdraw(date, userId);
+            broadcaster.changed(date);
+            versions.votesChanged(date);
+        });
         log.info("Vote deleted. userId={}", userId);
     }
 
-    @Cacheable(key = "#date", value = "voteDistribution")
+    /**
+     * Write-behind counterpart of {@link #delete}.
+     */
+    public void withdraw(long userId) {
+        log.info("Try to withdraw vote of userId={}", userId);
+        checkChangeAllowed(LocalTime.now(clock));
+
+        LocalDate date = LocalDate.now(clock);
+        if (tally.findBallot(date, userId).isEmpty()) {
+            throw new IllegalRequestDataException(String.format("Vote of userId = %s for date = %s not found", userId, date));
+        }
+        writeBehind.enqueueWithdrawal(userId, date);
+        tally.withdraw(date, userId);
+        broadcaster.changed(date);
+        versions.votesChanged(date);
+        log.info("Vote withdrawn. userId={}", userId);
+    }
+
+    public boolean isClosed(LocalDate date) {
+        return results.isClosed(date);
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind.isEnabled();
+    }
+
+    // only closed dates are cached, the live date is served by the tally and later dates are still open
+    @Cacheable(key = "#date", value = "voteDistribution", condition = "@voteResultService.isClosed(#date)")
     public List<VoteDistribution> getDistributionOnDate(LocalDate date) {
         log.info("Get votes distribution on {}", date);
-        return repository.getDistributionOnDate(date);
+        if (tally.isLive(date)) {
+            return tally.getDistribution(date);
+        }
+        return results.isClosed(date) ? results.getDistributionOnDate(date) : repository.getDistributionOnDate(date);
+    }
+
+    /**
+     * Sums up the votes on the dates from {@code from} to {@code to} inclusive: the closed dates from the results
+     * rollups and today from the tally.
+     */
+    public List<VoteDistribution> getDistributionInRange(LocalDate from, LocalDate to) {
+        log.info("Get votes distribution from {} to {}", from, to);
+        if (from.isAfter(to)) {
+            throw new IllegalRequestDataException(String.format("Date from = %s is after date to = %s", from, to));
+        }
+        LocalDate today = LocalDate.now(clock);
+        Stream<VoteDistribution> live = today.isBefore(from) || today.isAfter(to)
+                ? Stream.empty()
+                : tally.getDistribution(today).stream();
+        return VoteDistribution.sum(Stream.concat(results.getDistributionInRange(from, to).stream(), live));
+    }
+
+    public SseEmitter subscribeToDistribution(LocalDate date) {
+        return broadcaster.subscribe(date);
+    }
+
+    // both tiers are sorted, but a user's votes around the archive horizon may be in either while it is being archived
+    private static List<Vote> merge(List<Vote> votes, List<VoteArchive> archived, long limit) {
+        if (archived.isEmpty()) {
+            return votes;
+        }
+        return Stream.concat(votes.stream(), archived.stream().map(VoteArchive::toVote))
+                .sorted(HISTORY_ORDER)
+                .limit(limit)
+                .toList();
+    }
+
+    private Optional<Long> upsert(long userId, LocalDate votingDate, long restaurantId, LocalTime votingTime) {
+        try {
+            return repository.upsert(userId, votingDate, restaurantId, votingTime, timeConstraint);
+        } catch (DataIntegrityViolationException e) {
+            if (!getRootCause(e).getMessage().toLowerCase().contains(VOTE_UNIQUE_CONSTRAINT)) {
+                throw e;
+            }
+            // the concurrent insert is committed now, the repeated upsert changes it
+            conflicts.increment();
+            log.info("Concurrent first vote of userId = {}, repeat upsert", userId);
+            return repository.upsert(userId, votingDate, restaurantId, votingTime, timeConstraint);
+        }
+    }
+
+    private void checkChangeAllowed(LocalTime votingTime) {
+        if (votingTime.isAfter(timeConstraint)) {
+            throw timeConstraintViolation();
+        }
+    }
+
+    private VoteTimeConstraintException timeConstraintViolation() {
+        cutoffRejections.increment();
+        return new VoteTimeConstraintException(String.format("You can only change your vote until %s", timeConstraint));
     }
 }
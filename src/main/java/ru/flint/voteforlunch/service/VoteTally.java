@@ -0,0 +1,343 @@
+package ru.flint.voteforlunch.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.flint.voteforlunch.model.Ballot;
+import ru.flint.voteforlunch.model.Restaurant;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.repository.RestaurantRepository;
+import ru.flint.voteforlunch.repository.VoteRepository;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory tally of the votes on the live voting date (today).
+ * <p>
+ * Keeps the current ballot of every user and a striped counter per restaurant, so a changed vote moves exactly
+ * one count from the old restaurant to the new one. The sorted distribution is rebuilt only after the tally changed.
+ * The tally is loaded from the database on startup and lazily whenever the date rolls over or it was invalidated.
+ * Concurrent readers of a stale tally wait for a single load instead of a monitor, so virtual threads are not pinned.
+ * Votes still queued by {@link VoteWriteBehind} are written before the load, and a vote the writer drops invalidates
+ * the tally, so it does not keep ballots that never reached the database.
+ * <p>
+ * Votes are cast through {@link #vote}, so a closed date can be {@link #settle settled}: the votes still running when
+ * the date rolled over are finished and the queued ones are written before its results are read from the database.
+ */
+@Component
+@Slf4j
+public class VoteTally {
+    private final VoteRepository voteRepository;
+    private final RestaurantRepository restaurantRepository;
+    private final VoteWriteBehind writeBehind;
+    private final Clock clock;
+    private final Counter snapshotHits;
+    private final Counter snapshotMisses;
+
+    // bumped by every invalidation, a tally loaded before the last one is stale
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicReference<DailyTally> live = new AtomicReference<>();
+    // one load per date and generation runs at a time, concurrent readers wait for it without holding a monitor
+    private final ConcurrentMap<LoadKey, CompletableFuture<DailyTally>> loads = new ConcurrentHashMap<>();
+    // votes run under the read lock and read the date under it, settling a closed date takes the write lock
+    private final ReadWriteLock voting = new ReentrantReadWriteLock();
+    // the votes of all dates before this one are written
+    private volatile LocalDate settledBefore = LocalDate.MIN;
+
+    public VoteTally(VoteRepository voteRepository, RestaurantRepository restaurantRepository,
+                     VoteWriteBehind writeBehind, Clock clock, MeterRegistry meterRegistry) {
+        this.voteRepository = voteRepository;
+        this.restaurantRepository = restaurantRepository;
+        this.writeBehind = writeBehind;
+        this.clock = clock;
+        this.snapshotHits = snapshotCounter(meterRegistry, "hit");
+        this.snapshotMisses = snapshotCounter(meterRegistry, "miss");
+        writeBehind.onDropped(this::invalidate);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        tallyFor(LocalDate.now(clock));
+    }
+
+    /**
+     * Runs a vote at the current time. Changes and withdrawals are refused after the time constraint, so only votes
+     * need to run here to keep a closed date from changing after it was settled.
+     */
+    public <T> T vote(Function<LocalDateTime, T> vote) {
+        voting.readLock().lock();
+        try {
+            return vote.apply(LocalDateTime.now(clock));
+        } finally {
+            voting.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until every vote of the closed date is in the database: votes running since before the rollover are
+     * finished and the votes queued by {@link VoteWriteBehind} are written. Only the first call after a rollover waits.
+     */
+    public void settle(LocalDate date) {
+        if (date.isBefore(settledBefore)) {
+            return;
+        }
+        LocalDate today = LocalDate.now(clock);
+        if (!date.isBefore(today)) {
+            throw new IllegalStateException(String.format("Votes on %s are not closed", date));
+        }
+        log.info("Settle votes before {}", today);
+        voting.writeLock().lock();
+        try {
+            writeBehind.flush();
+            settledBefore = today;
+        } finally {
+            voting.writeLock().unlock();
+        }
+    }
+
+    public boolean isLive(LocalDate date) {
+        return LocalDate.now(clock).equals(date);
+    }
+
+    public List<VoteDistribution> getDistribution(LocalDate date) {
+        return tallyFor(date).snapshot();
+    }
+
+    public Optional<Ballot> findBallot(LocalDate date, long userId) {
+        return isLive(date) ? Optional.ofNullable(tallyFor(date).ballots.get(userId)) : Optional.empty();
+    }
+
+    /**
+     * Restaurant known to the live tally, detached from the persistence context.
+     */
+    public Optional<Restaurant> findRestaurant(long restaurantId) {
+        String name = tallyFor(LocalDate.now(clock)).restaurants.get(restaurantId);
+        if (name == null) {
+            return Optional.empty();
+        }
+        Restaurant restaurant = new Restaurant(name);
+        restaurant.setId(restaurantId);
+        return Optional.of(restaurant);
+    }
+
+    public void register(LocalDate date, long userId, long restaurantId, LocalTime voteTime) {
+        if (isLive(date)) {
+            tallyFor(date).register(new Ballot(userId, restaurantId, voteTime));
+        }
+    }
+
+    /**
+     * Registers the ballot of a vote that is not written yet. When changes are not allowed any more, only the first
+     * ballot of the user is registered: the check for an existing ballot and the registration are one atomic step,
+     * so two concurrent votes of the user can not both pass as the first one. Returns {@code false} when the ballot
+     * was refused.
+     */
+    public boolean tryRegister(LocalDate date, long userId, long restaurantId, LocalTime voteTime, boolean changeAllowed) {
+        if (!isLive(date)) {
+            return true;
+        }
+        Ballot ballot = new Ballot(userId, restaurantId, voteTime);
+        DailyTally tally = tallyFor(date);
+        if (changeAllowed) {
+            tally.register(ballot);
+            return true;
+        }
+        return tally.registerFirst(ballot);
+    }
+
+    public void withdraw(LocalDate date, long userId) {
+        if (isLive(date)) {
+            tallyFor(date).withdraw(userId);
+        }
+    }
+
+    /**
+     * Drops the tally, so it is reloaded on the next access. Used when restaurants change or votes are removed
+     * by a cascade the tally cannot follow. A load running concurrently is not taken as the live tally afterwards.
+     */
+    public void invalidate() {
+        log.debug("Invalidate votes tally");
+        generation.incrementAndGet();
+    }
+
+    private DailyTally tallyFor(LocalDate date) {
+        DailyTally tally = live.get();
+        if (!isStale(tally, date)) {
+            return tally;
+        }
+        // taken before the load, an invalidation during the load makes the result stale
+        LoadKey key = new LoadKey(date, generation.get());
+        CompletableFuture<DailyTally> load = new CompletableFuture<>();
+        CompletableFuture<DailyTally> running = loads.putIfAbsent(key, load);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            tally = load(key);
+            live.accumulateAndGet(tally, VoteTally::newer);
+            load.complete(tally);
+            return tally;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    private boolean isStale(DailyTally tally, LocalDate date) {
+        return tally == null || !tally.date.equals(date) || tally.generation != generation.get();
+    }
+
+    private DailyTally load(LoadKey key) {
+        log.info("Load votes tally on {}", key.date());
+        writeBehind.flush();
+        Map<Long, String> restaurants = restaurantRepository.findAll().stream()
+                .collect(Collectors.toMap(Restaurant::getId, Restaurant::getName));
+        DailyTally tally = new DailyTally(key.date(), key.generation(), restaurants, snapshotHits, snapshotMisses);
+        voteRepository.getBallotsOnDate(key.date()).forEach(tally::register);
+        return tally;
+    }
+
+    // a slower load of an older date or generation does not replace the live tally
+    private static DailyTally newer(DailyTally current, DailyTally loaded) {
+        if (current == null) {
+            return loaded;
+        }
+        int byDate = loaded.date.compareTo(current.date);
+        return byDate > 0 || byDate == 0 && loaded.generation > current.generation ? loaded : current;
+    }
+
+    private static DailyTally join(CompletableFuture<DailyTally> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private static Counter snapshotCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("vote.tally.distribution.reads")
+                .description("Reads of the live votes distribution, a miss re-sorts the tally")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record LoadKey(LocalDate date, long generation) {
+    }
+
+    private static final class DailyTally {
+        private final LocalDate date;
+        private final long generation;
+        private final Map<Long, String> restaurants;
+        private final ConcurrentMap<Long, LongAdder> counters = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Long, Ballot> ballots = new ConcurrentHashMap<>();
+        // ballots are changed concurrently under the read lock, the snapshot is taken exclusively under the write lock
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile List<VoteDistribution> snapshot;
+        private final Counter snapshotHits;
+        private final Counter snapshotMisses;
+
+        private DailyTally(LocalDate date, long generation, Map<Long, String> restaurants, Counter snapshotHits,
+                           Counter snapshotMisses) {
+            this.date = date;
+            this.generation = generation;
+            this.restaurants = restaurants;
+            this.snapshotHits = snapshotHits;
+            this.snapshotMisses = snapshotMisses;
+        }
+
+        private void register(Ballot ballot) {
+            lock.readLock().lock();
+            try {
+                ballots.compute(ballot.userId(), (userId, previous) -> {
+                    // the same ballot may be registered twice (load + commit callback), an older one may come late
+                    if (previous != null
+                            && (previous.equals(ballot) || previous.voteTime().isAfter(ballot.voteTime()))) {
+                        return previous;
+                    }
+                    if (previous != null) {
+                        counter(previous.restaurantId()).decrement();
+                    }
+                    counter(ballot.restaurantId()).increment();
+                    snapshot = null;
+                    return ballot;
+                });
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private boolean registerFirst(Ballot ballot) {
+            lock.readLock().lock();
+            try {
+                if (ballots.putIfAbsent(ballot.userId(), ballot) != null) {
+                    return false;
+                }
+                counter(ballot.restaurantId()).increment();
+                snapshot = null;
+                return true;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void withdraw(long userId) {
+            lock.readLock().lock();
+            try {
+                Ballot previous = ballots.remove(userId);
+                if (previous != null) {
+                    counter(previous.restaurantId()).decrement();
+                    snapshot = null;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private List<VoteDistribution> snapshot() {
+            List<VoteDistribution> result = snapshot;
+            if (result != null) {
+                snapshotHits.increment();
+            } else {
+                snapshotMisses.increment();
+                lock.writeLock().lock();
+                try {
+                    result = restaurants.entrySet().stream()
+                            .map(restaurant -> new VoteDistribution(
+                                    restaurant.getKey(), restaurant.getValue(), counter(restaurant.getKey()).sum()))
+                            .sorted(VoteDistribution.ORDER)
+                            .toList();
+                    snapshot = result;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            return result;
+        }
+
+        private LongAdder counter(long restaurantId) {
+            return counters.computeIfAbsent(restaurantId, id -> new LongAdder());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package ru.flint.voteforlunch.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.flint.voteforlunch.util.exceptions.ApplicationException;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional write-behind persistence of votes.
+ * <p>
+ * Accepted votes and withdrawals are put into a bounded queue and written to the {@code vote} table in JDBC batches
+ * by a single writer thread. Within a batch only the last change of every (user, date) is written, so the last vote
+ * wins exactly as with the synchronous path. The queue is drained and flushed on shutdown. A change the database
+ * rejects is dropped and reported to the {@link #onDropped} listener.
+ */
+@Component
+@Slf4j
+public class VoteWriteBehind {
+    private static final String MERGE_VOTE = """
+            MERGE INTO vote AS v
+            USING (VALUES (CAST(? AS BIGINT), CAST(? AS DATE), CAST(? AS BIGINT), CAST(? AS TIME)))
+                AS s (user_id, vote_date, restaurant_id, vote_time)
+            ON v.user_id = s.user_id AND v.vote_date = s.vote_date
+            WHEN MATCHED AND s.vote_time >= v.vote_time THEN
+                UPDATE SET restaurant_id = s.restaurant_id, vote_time = s.vote_time
+            WHEN NOT MATCHED THEN
+                INSERT (id, user_id, vote_date, restaurant_id, vote_time)
+                VALUES (NEXT VALUE FOR vote_seq, s.user_id, s.vote_date, s.restaurant_id, s.vote_time)
+            """;
+    private static final String DELETE_VOTE = "DELETE FROM vote WHERE user_id = ? AND vote_date = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final BlockingQueue<PendingVote> queue;
+    // not a monitor, a virtual thread writing a batch under it would pin its carrier
+    private final Lock flushLock = new ReentrantLock();
+    private Thread writer;
+    private volatile boolean running;
+    private volatile Runnable droppedListener = () -> {
+    };
+
+    public VoteWriteBehind(JdbcTemplate jdbcTemplate,
+                           @Value("${vote.write-behind.enabled:false}") boolean enabled,
+                           @Value("${vote.write-behind.batch-size:500}") int batchSize,
+                           @Value("${vote.write-behind.flush-interval:200ms}") Duration flushInterval,
+                           @Value("${vote.write-behind.queue-capacity:10000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    void start() {
+        if (enabled) {
+            log.info("Start vote write-behind writer: batch size = {}, flush interval = {}", batchSize, flushInterval);
+            running = true;
+            writer = new Thread(this::writeLoop, "vote-write-behind");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (writer != null) {
+            running = false;
+            writer.interrupt();
+            writer.join();
+            flush();
+            log.info("Vote write-behind writer stopped");
+        }
+    }
+
+    public void enqueueVote(long userId, long restaurantId, LocalDate voteDate, LocalTime voteTime) {
+        enqueue(new PendingVote(userId, restaurantId, voteDate, voteTime));
+    }
+
+    public void enqueueWithdrawal(long userId, LocalDate voteDate) {
+        enqueue(new PendingVote(userId, null, voteDate, null));
+    }
+
+    /**
+     * Sets the action run after a queued change was dropped, e.g. to reload state built from the accepted changes.
+     */
+    public void onDropped(Runnable listener) {
+        this.droppedListener = listener;
+    }
+
+    /**
+     * Writes everything queued so far. Called by the writer thread, on shutdown and by tests.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<PendingVote> drained = new ArrayList<>(batchSize);
+            while (queue.drainTo(drained, batchSize) > 0) {
+                write(drained);
+                drained.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void enqueue(PendingVote vote) {
+        try {
+            if (!queue.offer(vote, flushInterval.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new ApplicationException(HttpStatus.SERVICE_UNAVAILABLE, "Too many votes at the moment, try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationException(HttpStatus.SERVICE_UNAVAILABLE, "Vote was not accepted, try again later");
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            try {
+                Thread.sleep(flushInterval.toMillis());
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("Vote write-behind flush failed", e);
+            }
+        }
+    }
+
+    private void write(List<PendingVote> drained) {
+        // only the last change of every (user, date) matters, the queue keeps the acceptance order
+        Map<VoteKey, PendingVote> latest = new LinkedHashMap<>();
+        for (PendingVote vote : drained) {
+            latest.remove(vote.key());
+            latest.put(vote.key(), vote);
+        }
+        List<Object[]> merges = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (PendingVote vote : latest.values()) {
+            if (vote.restaurantId() == null) {
+                deletes.add(new Object[]{vote.userId(), Date.valueOf(vote.voteDate())});
+            } else {
+                merges.add(new Object[]{vote.userId(), Date.valueOf(vote.voteDate()), vote.restaurantId(),
+                        Time.valueOf(vote.voteTime())});
+            }
+        }
+        try {
+            if (!deletes.isEmpty()) {
+                jdbcTemplate.batchUpdate(DELETE_VOTE, deletes);
+            }
+            if (!merges.isEmpty()) {
+                jdbcTemplate.batchUpdate(MERGE_VOTE, merges);
+            }
+            log.debug("Vote write-behind flushed {} votes and {} withdrawals", merges.size(), deletes.size());
+        } catch (RuntimeException e) {
+            log.warn("Vote write-behind batch failed, retrying row by row: {}", e.getMessage());
+            deletes.forEach(args -> writeRow(DELETE_VOTE, args));
+            merges.forEach(args -> writeRow(MERGE_VOTE, args));
+        }
+    }
+
+    private void writeRow(String sql, Object[] args) {
+        try {
+            jdbcTemplate.update(sql, args);
+        } catch (RuntimeException e) {
+            log.error("Vote write-behind dropped vote {}: {}", args, e.getMessage());
+            droppedListener.run();
+        }
+    }
+
+    private record VoteKey(long userId, LocalDate voteDate) {
+    }
+
+    private record PendingVote(long userId, Long restaurantId, LocalDate voteDate, LocalTime voteTime) {
+        private VoteKey key() {
+            return new VoteKey(userId, voteDate);
+        }
+    }
+}
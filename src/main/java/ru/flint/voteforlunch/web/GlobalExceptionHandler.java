@@ -1,5 +1,6 @@
 package ru.flint.voteforlunch.web;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
@@ -31,6 +32,7 @@ import java.util.Objects;
 @Slf4j
 public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
     private final MessageSource messageSource;
+    private final MeterRegistry meterRegistry;
 
     @Override
     @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
@@ -86,6 +88,7 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
     @ResponseStatus(HttpStatus.CONFLICT)
     public ResponseEntity<?> conflict(WebRequest request, DataIntegrityViolationException exception) {
         log.error("DataIntegrityViolationException: {}", exception.getMessage());
+        meterRegistry.counter("data.conflicts").increment();
         String message = null;
         if (ValidationUtil.getRootCause(exception).getMessage().toLowerCase().contains("email_unique_idx")) {
             message = "User with this email already exists";
@@ -0,0 +1,102 @@
+package ru.flint.voteforlunch.web;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.flint.voteforlunch.util.exceptions.IllegalRequestDataException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Responses of requests sent with an {@value #HEADER} header, kept for a while to answer retries.
+ * <p>
+ * A retry with the same key from the same user gets the original response, the request is not executed again.
+ * Concurrent requests with the same key are executed once, the others wait for the response. The store keeps a future
+ * of the response, so the request is executed outside the store's locks. Failed requests are not remembered, so they
+ * can be retried. The store is bounded and entries expire after {@code vote.idempotency.ttl}.
+ */
+@Component
+@Slf4j
+public class IdempotentResponses {
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final String CACHE_NAME = "idempotentResponses";
+
+    private final AsyncCache<Key, Response> responses;
+    private final Counter duplicates;
+
+    public IdempotentResponses(MeterRegistry meterRegistry,
+                               @Value("${vote.idempotency.ttl:10m}") Duration ttl,
+                               @Value("${vote.idempotency.maximum-size:100000}") long maximumSize) {
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        // the tags of the Spring caches, Prometheus drops meters of the same name with other tag keys
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, CACHE_NAME, "cache.manager", "none", "name", CACHE_NAME);
+        this.duplicates = Counter.builder("vote.idempotency.duplicates")
+                .description("Retried requests answered with the original response")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Executes the request once per user and idempotency key. The request fingerprint tells different requests apart,
+     * reusing a key for another request is rejected.
+     *
+     * @param key idempotency key, the request is just executed when it is {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(long userId, String key, Object fingerprint, Supplier<T> request) {
+        if (key == null) {
+            return request.get();
+        }
+        Key cacheKey = new Key(userId, key);
+        while (true) {
+            CompletableFuture<Response> execution = new CompletableFuture<>();
+            CompletableFuture<Response> response = responses.get(cacheKey, (k, executor) -> execution);
+            if (response == execution) {
+                return (T) execute(cacheKey, fingerprint, request, execution).body();
+            }
+            try {
+                Response original = response.join();
+                if (!original.fingerprint().equals(fingerprint)) {
+                    throw new IllegalRequestDataException(String.format("%s %s was used for another request", HEADER, key));
+                }
+                log.info("Duplicate request of userId = {} with {} {}", userId, HEADER, key);
+                duplicates.increment();
+                return (T) original.body();
+            } catch (CompletionException e) {
+                // the original request failed and is forgotten, this one is executed instead
+                log.debug("Original request of userId = {} with {} {} failed, execute again", userId, HEADER, key);
+            }
+        }
+    }
+
+    private Response execute(Key key, Object fingerprint, Supplier<?> request, CompletableFuture<Response> execution) {
+        try {
+            Response response = new Response(fingerprint, request.get());
+            execution.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            // removed before the waiting requests are woken up, so they do not get the failed execution again
+            responses.asMap().remove(key, execution);
+            execution.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private record Key(long userId, String key) {
+    }
+
+    private record Response(Object fingerprint, Object body) {
+    }
+}
@@ -0,0 +1,133 @@
+package ru.flint.voteforlunch.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON bodies of frequent reads of rarely changing data, kept serialized in the Spring caches {@value #MENU},
+ * {@value #MENUS} and {@value #VOTE_DISTRIBUTION}, so a hit skips mapping and serialization and the bytes are written
+ * to the response as they are.
+ * <p>
+ * The caches are evicted together with the caches of the data they are made of: {@code menu}, {@code menus} and
+ * {@code voteDistribution}. Bodies of at least {@code response-cache.gzip-min-size} bytes are also kept compressed
+ * and sent to clients accepting gzip when {@code response-cache.gzip} is on.
+ */
+@Component
+public class SerializedResponses {
+    public static final String MENU = "menuResponse";
+    public static final String MENUS = "menusResponse";
+    public static final String VOTE_DISTRIBUTION = "voteDistributionResponse";
+
+    private static final String GZIP = "gzip";
+
+    private final CacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+    private final boolean gzip;
+    private final int gzipMinSize;
+
+    public SerializedResponses(CacheManager cacheManager,
+                               ObjectMapper objectMapper,
+                               @Value("${response-cache.gzip:true}") boolean gzip,
+                               @Value("${response-cache.gzip-min-size:1024}") int gzipMinSize) {
+        this.cacheManager = cacheManager;
+        this.objectMapper = objectMapper;
+        this.gzip = gzip;
+        this.gzipMinSize = gzipMinSize;
+    }
+
+    /**
+     * The cached body, or the body of the supplier serialized and cached.
+     *
+     * @param acceptEncoding the {@code Accept-Encoding} header of the request, may be {@code null}
+     */
+    public ResponseEntity<byte[]> get(String cacheName, Object key, String acceptEncoding, Supplier<?> body) {
+        Cache cache = cacheManager.getCache(cacheName);
+        SerializedResponse response = cache == null ? null : cache.get(key, SerializedResponse.class);
+        if (response == null) {
+            // concurrent misses serialize the body twice, the data itself comes from the entity caches
+            response = serialize(body.get());
+            if (cache != null) {
+                cache.put(key, response);
+            }
+        }
+        return toResponseEntity(response, acceptEncoding);
+    }
+
+    /**
+     * Answers 304 Not Modified when {@code If-None-Match} of the request holds the tag, before any body is looked up,
+     * and sets the {@code ETag} header otherwise. A strong tag stands for one representation, so the tag of a gzipped
+     * body differs from the tag of the plain one.
+     */
+    public boolean notModified(WebRequest request, String tag, String acceptEncoding) {
+        return request.checkNotModified(gzip && acceptsGzip(acceptEncoding) ? tag + "-gzip" : tag);
+    }
+
+    /**
+     * The body of the supplier serialized, without caching, e.g. for data changing all the time.
+     */
+    public ResponseEntity<byte[]> uncached(String acceptEncoding, Supplier<?> body) {
+        return toResponseEntity(serialize(body.get()), acceptEncoding);
+    }
+
+    private SerializedResponse serialize(Object body) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid write to JSON:\n'" + body + "'", e);
+        }
+        return new SerializedResponse(json, gzip && json.length >= gzipMinSize ? compress(json) : null);
+    }
+
+    private static ResponseEntity<byte[]> toResponseEntity(SerializedResponse response, String acceptEncoding) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (response.gzip() == null) {
+            return builder.body(response.json());
+        }
+        builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        return acceptsGzip(acceptEncoding)
+                ? builder.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(response.gzip())
+                : builder.body(response.json());
+    }
+
+    // "gzip" or "gzip;q=0.5" is accepted, "gzip;q=0" is not
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if (parts[0].trim().equalsIgnoreCase(GZIP)) {
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private record SerializedResponse(byte[] json, byte[] gzip) {
+    }
+}
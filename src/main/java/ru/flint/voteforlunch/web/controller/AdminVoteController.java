@@ -0,0 +1,64 @@
+package ru.flint.voteforlunch.web.controller;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.flint.voteforlunch.model.VoteImportResult;
+import ru.flint.voteforlunch.service.VoteExportService;
+import ru.flint.voteforlunch.service.VoteImportService;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping(value = AdminVoteController.REST_URL, produces = MediaType.APPLICATION_JSON_VALUE)
+public class AdminVoteController {
+    public static final String REST_URL = "/api/version1.0/admin/votes";
+
+    private final VoteImportService importService;
+    private final VoteExportService exportService;
+
+    public AdminVoteController(VoteImportService importService, VoteExportService exportService) {
+        this.importService = importService;
+        this.exportService = exportService;
+    }
+
+    /**
+     * Imports votes from NDJSON, one {@code {"userId":..,"restaurantId":..,"date":"2022-11-15","time":"09:30"}} per line.
+     * The body is read as a stream.
+     */
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public VoteImportResult importVotes(InputStream body) {
+        return importService.importVotes(new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Exports the votes from {@code from} to {@code to} inclusive as CSV or NDJSON. The response is streamed while
+     * the votes are read from the database.
+     */
+    @GetMapping(value = "/export", produces = MediaType.ALL_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportVotes(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "format", defaultValue = "ndjson") String format) {
+        VoteExportService.Format exportFormat = VoteExportService.Format.of(format);
+        exportService.checkRange(from, to);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(String.format("votes-%s-%s.%s", from, to, exportFormat.name().toLowerCase()))
+                        .build().toString())
+                .body(output -> exportService.exportVotes(from, to, exportFormat, output));
+    }
+}
@@ -0,0 +1,37 @@
+package ru.flint.voteforlunch.web.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.flint.voteforlunch.model.UserProfile;
+import ru.flint.voteforlunch.service.UserService;
+import ru.flint.voteforlunch.web.security.AccessToken;
+import ru.flint.voteforlunch.web.security.AccessTokens;
+import ru.flint.voteforlunch.web.security.AuthorizedUser;
+
+@RestController
+@RequestMapping(value = AuthController.REST_URL, produces = MediaType.APPLICATION_JSON_VALUE)
+public class AuthController {
+    public static final String REST_URL = "/api/version1.0/auth";
+
+    private final UserService service;
+    private final AccessTokens accessTokens;
+
+    public AuthController(UserService service, AccessTokens accessTokens) {
+        this.service = service;
+        this.accessTokens = accessTokens;
+    }
+
+    /**
+     * Exchanges the HTTP Basic credentials of the request for an access token. A bearer token is not accepted here,
+     * so a client has to present the credentials again to get a new token. The user profile is read again, so the
+     * token carries the current email and roles.
+     */
+    @PostMapping("/token")
+    public AccessToken issueToken(@AuthenticationPrincipal AuthorizedUser user) {
+        UserProfile profile = service.getProfile(user.id());
+        return accessTokens.issue(new AuthorizedUser(profile.id(), profile.email(), profile.roles()));
+    }
+}
@@ -3,23 +3,30 @@ package ru.flint.voteforlunch.web.controller;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import ru.flint.voteforlunch.web.SerializedResponses;
+import ru.flint.voteforlunch.web.dto.MenuBatchRequestDTO;
 import ru.flint.voteforlunch.web.dto.MenuListDTO;
 import ru.flint.voteforlunch.web.dto.MenuRequestDTO;
 import ru.flint.voteforlunch.web.dto.MenuResponseDTO;
 import ru.flint.voteforlunch.web.mapper.MenuListMapper;
 import ru.flint.voteforlunch.web.mapper.MenuMapper;
 import ru.flint.voteforlunch.model.Menu;
+import ru.flint.voteforlunch.service.DataVersions;
+import ru.flint.voteforlunch.service.MenuPublishService;
 import ru.flint.voteforlunch.service.MenuService;
 
 import java.net.URI;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Set;
 
 import static ru.flint.voteforlunch.util.ValidationUtil.checkNew;
 
@@ -29,25 +36,43 @@ public class MenuController {
     public static final String REST_URL = "/api/version1.0/menus";
 
     private final MenuService service;
+    private final MenuPublishService publishService;
     private final MenuMapper mapper;
     private final MenuListMapper listMapper;
+    private final SerializedResponses responses;
+    private final DataVersions versions;
 
-    public MenuController(MenuService service, MenuMapper mapper, MenuListMapper listMapper) {
+    public MenuController(MenuService service, MenuPublishService publishService, MenuMapper mapper,
+                          MenuListMapper listMapper, SerializedResponses responses, DataVersions versions) {
         this.service = service;
+        this.publishService = publishService;
         this.mapper = mapper;
         this.listMapper = listMapper;
+        this.responses = responses;
+        this.versions = versions;
     }
 
     @GetMapping("/on-date")
-    @ResponseStatus(HttpStatus.OK)
-    public List<MenuListDTO> getMenusOnDate(
-            @RequestParam(name = "date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @NotNull LocalDate date){
-        return service.getAllWithRestaurants(date).stream().map(listMapper::toDTO).toList();
+    public ResponseEntity<byte[]> getMenusOnDate(
+            @RequestParam(name = "date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @NotNull LocalDate date
+            , @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+            , WebRequest request){
+        if (responses.notModified(request, versions.menusTag(date), acceptEncoding)) {
+            return null;
+        }
+        return responses.get(SerializedResponses.MENUS, date, acceptEncoding,
+                () -> service.getAllWithRestaurants(date).stream().map(listMapper::toDTO).toList());
     }
 
     @GetMapping("/{id}")
-    public MenuResponseDTO get (@PathVariable long id){
-        return mapper.toDTO(service.getByIdWithAllData(id));
+    public ResponseEntity<byte[]> get (@PathVariable long id
+            , @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+            , WebRequest request){
+        if (responses.notModified(request, versions.menuTag(), acceptEncoding)) {
+            return null;
+        }
+        return responses.get(SerializedResponses.MENU, id, acceptEncoding,
+                () -> mapper.toDTO(service.getByIdWithAllData(id)));
     }
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -61,6 +86,26 @@ public class MenuController {
         return ResponseEntity.created(uriOfNewResource).body(mapper.toDTO(created));
     }
 
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<MenuListDTO> createAll(@Valid @RequestBody MenuBatchRequestDTO batchDTO) {
+        batchDTO.getMenus().forEach(menuDTO -> checkNew(menuDTO));
+        return publishService.publish(mapper.toEntities(batchDTO.getMenus())).stream().map(listMapper::toDTO).toList();
+    }
+
+    /**
+     * Copies the menus of a date to another one and returns the menus of the target date.
+     */
+    @PostMapping("/copy")
+    public List<MenuListDTO> copy(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from
+            , @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+            , @RequestParam(name = "restaurantIds", required = false) Set<Long> restaurantIds) {
+        publishService.copy(from, to, restaurantIds);
+        // committed, so this loads the target date into the cache again
+        return service.getAllWithRestaurants(to).stream().map(listMapper::toDTO).toList();
+    }
+
     @DeleteMapping(path = "/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void delete(@PathVariable long id) {
@@ -64,7 +64,7 @@ public class UserController {
 
     @GetMapping("/profile")
     public UserDTO getProfile(@AuthenticationPrincipal AuthorizedUser user) {
-        return get(user.id());
+        return mapper.toDTO(service.getProfile(user.id()));
     }
 
     @PutMapping(path = "/profile", consumes = MediaType.APPLICATION_JSON_VALUE)
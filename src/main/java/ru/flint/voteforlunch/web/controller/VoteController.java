@@ -1,67 +1,148 @@
 package ru.flint.voteforlunch.web.controller;
 
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.flint.voteforlunch.web.IdempotentResponses;
+import ru.flint.voteforlunch.web.SerializedResponses;
 import ru.flint.voteforlunch.web.dto.VoteDTO;
 import ru.flint.voteforlunch.web.mapper.VoteMapper;
+import ru.flint.voteforlunch.model.Vote;
 import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.model.VotePage;
+import ru.flint.voteforlunch.service.DataVersions;
 import ru.flint.voteforlunch.service.VoteService;
 import ru.flint.voteforlunch.web.security.AuthorizedUser;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping(value = VoteController.REST_URL, produces = MediaType.APPLICATION_JSON_VALUE)
 public class VoteController {
     public static final String REST_URL = "/api/version1.0/votes";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int DEFAULT_PAGE_SIZE = 20;
 
     private final VoteService service;
     private final VoteMapper mapper;
+    private final IdempotentResponses idempotentResponses;
+    private final SerializedResponses responses;
+    private final DataVersions versions;
 
-    public VoteController(VoteService service, VoteMapper mapper) {
+    public VoteController(VoteService service, VoteMapper mapper, IdempotentResponses idempotentResponses,
+                          SerializedResponses responses, DataVersions versions) {
         this.service = service;
         this.mapper = mapper;
+        this.idempotentResponses = idempotentResponses;
+        this.responses = responses;
+        this.versions = versions;
     }
 
+    /**
+     * Votes of the user, the latest first. All of them without {@code cursor} and {@code limit}, otherwise page by page:
+     * when there are more votes, the {@value #NEXT_CURSOR_HEADER} header holds the {@code cursor} of the next page.
+     */
     @GetMapping
-    public List<VoteDTO> getAllForUser(@AuthenticationPrincipal AuthorizedUser authorizedUser){
-        return service.getAllForUser(authorizedUser.id()).stream().map(mapper::toDTO).toList();
+    public ResponseEntity<List<VoteDTO>> getAllForUser(
+            @RequestParam(name = "cursor", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate cursor
+            , @RequestParam(name = "limit", required = false) Integer limit
+            , @AuthenticationPrincipal AuthorizedUser authorizedUser){
+        if (cursor == null && limit == null) {
+            return ResponseEntity.ok(service.getAllForUser(authorizedUser.id()).stream().map(mapper::toDTO).toList());
+        }
+        VotePage page = service.getPageForUser(authorizedUser.id(), cursor, limit == null ? DEFAULT_PAGE_SIZE : limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().toString());
+        }
+        return response.body(page.votes().stream().map(mapper::toDTO).toList());
     }
     @GetMapping("/{id}")
     public VoteDTO getVote(@PathVariable long id,@AuthenticationPrincipal AuthorizedUser authorizedUser){
         return mapper.toDTO(service.get(id,authorizedUser.id()));
     }
 
+    /**
+     * Votes distribution on the date. The final distribution of a closed date is served serialized from the cache.
+     * A client holding the current version of the date gets 304 Not Modified.
+     */
     @GetMapping("/distribution")
-    @ResponseStatus(HttpStatus.OK)
-    public List<VoteDistribution> getDistributionOnDate(
-            @RequestParam(name = "date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date){
-        return service.getDistributionOnDate(date);
+    public ResponseEntity<byte[]> getDistributionOnDate(
+            @RequestParam(name = "date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+            , @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+            , WebRequest request){
+        if (responses.notModified(request, versions.votesTag(date), acceptEncoding)) {
+            return null;
+        }
+        Supplier<List<VoteDistribution>> distribution = () -> service.getDistributionOnDate(date);
+        return service.isClosed(date)
+                ? responses.get(SerializedResponses.VOTE_DISTRIBUTION, date, acceptEncoding, distribution)
+                : responses.uncached(acceptEncoding, distribution);
+    }
+
+    /**
+     * Votes distribution summed up over the dates from {@code from} to {@code to} inclusive.
+     */
+    @GetMapping("/distribution/range")
+    public List<VoteDistribution> getDistributionInRange(
+            @RequestParam(name = "from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(name = "to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return service.getDistributionInRange(from, to);
+    }
+
+    /**
+     * Server-Sent Events stream of the votes distribution on the date: the current distribution first,
+     * then a new one whenever votes change, at most a few times a second.
+     */
+    @GetMapping(value = "/distribution/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDistributionOnDate(
+            @RequestParam(name = "date") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return service.subscribeToDistribution(date);
     }
 
     @PostMapping
-    @Transactional
     @ResponseStatus(HttpStatus.CREATED)
     public VoteDTO vote(@RequestParam("restaurantId") long restaurantId
+            , @RequestHeader(name = IdempotentResponses.HEADER, required = false) String idempotencyKey
             , @AuthenticationPrincipal AuthorizedUser authorizedUser){
-       return mapper.toDTO(service.saveAndReturnWithDetails(restaurantId,authorizedUser.id()));
+       return save(restaurantId, authorizedUser.id(), idempotencyKey);
     }
 
     @PutMapping
-    @Transactional
     public VoteDTO changeVote(@RequestParam("restaurantId") long restaurantId
+            , @RequestHeader(name = IdempotentResponses.HEADER, required = false) String idempotencyKey
             , @AuthenticationPrincipal AuthorizedUser authorizedUser){
-        return mapper.toDTO(service.saveAndReturnWithDetails(restaurantId,authorizedUser.id()));
+        return save(restaurantId, authorizedUser.id(), idempotencyKey);
     }
 
     @DeleteMapping
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void delete(@AuthenticationPrincipal AuthorizedUser authUser) {
-        service.delete(authUser.id());
+        if (service.isWriteBehind()) {
+            service.withdraw(authUser.id());
+        } else {
+            service.delete(authUser.id());
+        }
+    }
+
+    // a retry with the same idempotency key gets the original vote without saving it again
+    private VoteDTO save(long restaurantId, long userId, String idempotencyKey) {
+        return idempotentResponses.execute(userId, idempotencyKey, restaurantId,
+                () -> mapper.toDTO(save(restaurantId, userId)));
+    }
+
+    // in write-behind mode the vote is only queued, so no transaction is opened for the request
+    private Vote save(long restaurantId, long userId) {
+        return service.isWriteBehind()
+                ? service.accept(restaurantId, userId)
+                : service.saveAndReturnWithDetails(restaurantId, userId);
     }
 }
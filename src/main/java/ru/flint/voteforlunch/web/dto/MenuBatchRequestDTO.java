@@ -0,0 +1,24 @@
+package ru.flint.voteforlunch.web.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Many {@link MenuRequestDTO}s published at once
+ */
+@Value
+public class MenuBatchRequestDTO {
+    @NotEmpty
+    List<@Valid MenuRequestDTO> menus;
+
+    // a single argument constructor is taken for a delegating one otherwise
+    @JsonCreator
+    public MenuBatchRequestDTO(@JsonProperty("menus") List<MenuRequestDTO> menus) {
+        this.menus = menus;
+    }
+}
@@ -1,5 +1,6 @@
 package ru.flint.voteforlunch.web.dto;
 
+import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -14,5 +15,7 @@ import lombok.Value;
 public class MenuItemRequestDTO extends AbstractDTO{
     long dishId;
 
-    @Positive Integer price;
+    @NotNull
+    @Positive(message = "Price must be positive")
+    Integer price;
 }
@@ -1,5 +1,6 @@
 package ru.flint.voteforlunch.web.dto;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.EqualsAndHashCode;
@@ -21,5 +22,5 @@ public class MenuRequestDTO extends AbstractDTO{
     long restaurantId;
 
     @NotEmpty
-    Set<MenuItemRequestDTO> menuItems;
+    Set<@Valid MenuItemRequestDTO> menuItems;
 }
@@ -1,24 +1,38 @@
 package ru.flint.voteforlunch.web.mapper;
 
+import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
+import ru.flint.voteforlunch.model.AbstractEntity;
+import ru.flint.voteforlunch.model.Dish;
+import ru.flint.voteforlunch.model.Restaurant;
 import ru.flint.voteforlunch.web.dto.MenuItemRequestDTO;
 import ru.flint.voteforlunch.web.dto.MenuRequestDTO;
 import ru.flint.voteforlunch.web.dto.MenuResponseDTO;
 import ru.flint.voteforlunch.model.Menu;
+import ru.flint.voteforlunch.repository.DishRepository;
 import ru.flint.voteforlunch.repository.RestaurantRepository;
 
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static ru.flint.voteforlunch.util.ValidationUtil.checkExist;
+
 @Component
 public class MenuMapper implements RequestResponseMapper<Menu, MenuRequestDTO, MenuResponseDTO> {
     private final RestaurantMapper restaurantMapper;
     private final MenuItemMapper menuItemMapper;
     private final RestaurantRepository restaurantRepository;
+    private final DishRepository dishRepository;
 
-    public MenuMapper(RestaurantMapper restaurantMapper, MenuItemMapper menuItemMapper, RestaurantRepository restaurantRepository) {
+    public MenuMapper(RestaurantMapper restaurantMapper, MenuItemMapper menuItemMapper, RestaurantRepository restaurantRepository,
+                      DishRepository dishRepository) {
         this.restaurantMapper = restaurantMapper;
         this.menuItemMapper = menuItemMapper;
         this.restaurantRepository = restaurantRepository;
+        this.dishRepository = dishRepository;
     }
     @Override
     public Menu toEntity(MenuRequestDTO dto) {
@@ -32,6 +46,27 @@ public class MenuMapper implements RequestResponseMapper<Menu, MenuRequestDTO, M
         return menu;
     }
 
+    /**
+     * Converts many menus at once: the restaurants of all of them are loaded and the dishes checked with one query
+     * each, the items refer to the dishes by reference.
+     */
+    public List<Menu> toEntities(List<MenuRequestDTO> dtos) {
+        Map<Long, Restaurant> restaurants = findAllById(restaurantRepository,
+                dtos.stream().map(MenuRequestDTO::getRestaurantId).collect(Collectors.toSet()), Restaurant.class);
+        findAllById(dishRepository, dtos.stream().flatMap(dto -> dto.getMenuItems().stream())
+                .map(MenuItemRequestDTO::getDishId).collect(Collectors.toSet()), Dish.class);
+        return dtos.stream().map(dto -> {
+            Menu menu = new Menu();
+            menu.setId(dto.getId());
+            menu.setMenuDate(dto.getMenuDate());
+            menu.setRestaurant(restaurants.get(dto.getRestaurantId()));
+            for (MenuItemRequestDTO menuItemDTO : dto.getMenuItems()) {
+                menu.addMenuItem(menuItemMapper.toEntity(menuItemDTO));
+            }
+            return menu;
+        }).toList();
+    }
+
     @Override
     public MenuResponseDTO toDTO(Menu entity) {
         return new MenuResponseDTO(
@@ -40,4 +75,12 @@ public class MenuMapper implements RequestResponseMapper<Menu, MenuRequestDTO, M
                 restaurantMapper.toDTO(entity.getRestaurant()),
                 entity.getMenuItemSet().stream().map(menuItemMapper::toDTO).collect(Collectors.toSet()));
     }
+
+    private static <T extends AbstractEntity> Map<Long, T> findAllById(JpaRepository<T, Long> repository, Set<Long> ids,
+                                                                      Class<T> clazz) {
+        Map<Long, T> found = repository.findAllById(ids).stream()
+                .collect(Collectors.toMap(AbstractEntity::getId, Function.identity()));
+        ids.forEach(id -> checkExist(found.containsKey(id), id, clazz));
+        return found;
+    }
 }
@@ -4,6 +4,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 import ru.flint.voteforlunch.web.dto.UserDTO;
 import ru.flint.voteforlunch.model.User;
+import ru.flint.voteforlunch.model.UserProfile;
 @Component
 public class UserMapper implements Mapper<User, UserDTO>{
     private final PasswordEncoder passwordEncoder;
@@ -38,4 +39,16 @@ public class UserMapper implements Mapper<User, UserDTO>{
                 entity.getRoles()
         );
     }
+
+    public UserDTO toDTO(UserProfile profile) {
+        return new UserDTO(
+                profile.id(),
+                profile.email(),
+                profile.firstName(),
+                profile.lastName(),
+                "***",
+                profile.enabled(),
+                profile.roles()
+        );
+    }
 }
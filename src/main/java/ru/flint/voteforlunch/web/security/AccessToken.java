@@ -0,0 +1,7 @@
+package ru.flint.voteforlunch.web.security;
+
+/**
+ * Answer of the token endpoint, {@code expiresIn} is in seconds.
+ */
+public record AccessToken(String accessToken, String tokenType, long expiresIn) {
+}
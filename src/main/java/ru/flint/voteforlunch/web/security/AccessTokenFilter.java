@@ -0,0 +1,65 @@
+package ru.flint.voteforlunch.web.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Authenticates requests with an {@code Authorization: Bearer} header from the access token alone, without a
+ * database query. An invalid or expired token is answered with 401, other requests pass on to HTTP Basic.
+ * Requests matching {@code basicOnly}, e.g. the token endpoint, are always left to HTTP Basic, so a token can not
+ * be renewed with itself forever.
+ * <p>
+ * Not a bean, so it is only added to the security filter chain and not registered as a servlet filter as well.
+ */
+@Slf4j
+public class AccessTokenFilter extends OncePerRequestFilter {
+    private static final String PREFIX = AccessTokens.TOKEN_TYPE + " ";
+
+    private final AccessTokens accessTokens;
+    private final RequestMatcher basicOnly;
+
+    public AccessTokenFilter(AccessTokens accessTokens, RequestMatcher basicOnly) {
+        this.accessTokens = accessTokens;
+        this.basicOnly = basicOnly;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return basicOnly.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, PREFIX, 0, PREFIX.length())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try {
+            AuthorizedUser user = accessTokens.authenticate(header.substring(PREFIX.length()).trim());
+            SecurityContext context = SecurityContextHolder.createEmptyContext();
+            context.setAuthentication(UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities()));
+            SecurityContextHolder.setContext(context);
+        } catch (AuthenticationException e) {
+            log.debug("Access token rejected: {}", e.getMessage());
+            SecurityContextHolder.clearContext();
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, AccessTokens.TOKEN_TYPE + " error=\"invalid_token\"");
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
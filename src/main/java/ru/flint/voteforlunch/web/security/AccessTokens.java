@@ -0,0 +1,121 @@
+package ru.flint.voteforlunch.web.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.stereotype.Component;
+import ru.flint.voteforlunch.model.Role;
+import ru.flint.voteforlunch.web.json.JsonUtil;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Short-lived access tokens, an alternative to sending the password with every request.
+ * <p>
+ * A token is a JWT signed with HMAC-SHA256 and carries the user id, email and roles, so a request with a token is
+ * authenticated without reading the user. Tokens are stateless: a change of the user, its roles or a deletion takes
+ * effect when the token expires after {@code auth-token.ttl}. The key is {@code auth-token.secret} (Base64, at least
+ * 32 bytes); without it a random key is generated on startup and tokens do not survive a restart.
+ */
+@Component
+@Slf4j
+public class AccessTokens {
+    public static final String TOKEN_TYPE = "Bearer";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+    // the only accepted header, a token announcing another algorithm, e.g. "none", is rejected
+    private static final String HEADER = encode("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(UTF_8));
+
+    private final SecretKey key;
+    private final Duration ttl;
+    private final Clock clock;
+
+    public AccessTokens(Clock clock,
+                        @Value("${auth-token.secret:}") String secret,
+                        @Value("${auth-token.ttl:15m}") Duration ttl) throws GeneralSecurityException {
+        this.clock = clock;
+        this.ttl = ttl;
+        if (secret.isBlank()) {
+            log.warn("auth-token.secret is not set, access tokens are signed with a random key and expire on restart");
+            this.key = KeyGenerator.getInstance(HMAC_ALGORITHM).generateKey();
+        } else {
+            byte[] bytes = Base64.getDecoder().decode(secret.trim());
+            if (bytes.length < MIN_SECRET_BYTES) {
+                throw new IllegalStateException("auth-token.secret must hold at least " + MIN_SECRET_BYTES + " bytes");
+            }
+            this.key = new SecretKeySpec(bytes, HMAC_ALGORITHM);
+        }
+    }
+
+    public AccessToken issue(AuthorizedUser user) {
+        log.info("Issue access token for userId = {}", user.id());
+        long issuedAt = clock.instant().getEpochSecond();
+        Claims claims = new Claims(String.valueOf(user.id()), user.getUsername(), user.roles(),
+                issuedAt, issuedAt + ttl.toSeconds());
+        String content = HEADER + "." + encode(JsonUtil.writeValue(claims).getBytes(UTF_8));
+        return new AccessToken(content + "." + encode(sign(content)), TOKEN_TYPE, ttl.toSeconds());
+    }
+
+    /**
+     * The user of a valid token, built from its claims.
+     *
+     * @throws BadCredentialsException when the token is malformed or not signed with the key
+     * @throws CredentialsExpiredException when the token has expired
+     */
+    public AuthorizedUser authenticate(String token) {
+        int claimsStart = token.indexOf('.');
+        int signatureStart = token.lastIndexOf('.');
+        if (claimsStart < 0 || claimsStart == signatureStart || !token.substring(0, claimsStart).equals(HEADER)) {
+            throw new BadCredentialsException("Malformed access token");
+        }
+        String content = token.substring(0, signatureStart);
+        if (!MessageDigest.isEqual(sign(content), decode(token.substring(signatureStart + 1)))) {
+            throw new BadCredentialsException("Invalid access token signature");
+        }
+        // signed by us, so the claims are well-formed
+        Claims claims = JsonUtil.readValue(new String(decode(content.substring(claimsStart + 1)), UTF_8), Claims.class);
+        if (claims.exp() <= clock.instant().getEpochSecond()) {
+            throw new CredentialsExpiredException("Access token expired");
+        }
+        return new AuthorizedUser(Long.parseLong(claims.sub()), claims.email(), claims.roles());
+    }
+
+    private byte[] sign(String content) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(content.getBytes(UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] decode(String part) {
+        try {
+            return Base64.getUrlDecoder().decode(part);
+        } catch (IllegalArgumentException e) {
+            throw new BadCredentialsException("Malformed access token");
+        }
+    }
+
+    private record Claims(String sub, String email, Set<Role> roles, long iat, long exp) {
+    }
+}
@@ -0,0 +1,105 @@
+package ru.flint.voteforlunch.web.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Base64;
+
+import static ru.flint.voteforlunch.util.TransactionUtil.afterCommit;
+
+/**
+ * Successful authentications, so repeated HTTP Basic requests of a user skip both the user query and the password
+ * hashing.
+ * <p>
+ * An entry is keyed by an HMAC of the credentials of the {@code Authorization} header, {@code email:password}, with a
+ * key generated on startup: the cache holds no password and its keys are worthless outside the process. The cache is
+ * bounded, entries expire after {@code auth-cache.ttl} and the entries of a user are dropped when the user is updated
+ * or deleted. Failed authentications are not cached.
+ */
+@Component
+@Slf4j
+public class AuthenticationCache {
+    private static final String CACHE_NAME = "authentications";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<String, Authentication> authentications;
+    private final SecretKey key;
+
+    public AuthenticationCache(MeterRegistry meterRegistry,
+                               @Value("${auth-cache.ttl:5m}") Duration ttl,
+                               @Value("${auth-cache.maximum-size:10000}") long maximumSize) throws GeneralSecurityException {
+        this.authentications = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.key = KeyGenerator.getInstance(HMAC_ALGORITHM).generateKey();
+        CaffeineCacheMetrics.monitor(meterRegistry, authentications, CACHE_NAME, "cache.manager", "none", "name", CACHE_NAME);
+    }
+
+    /**
+     * The provider answering repeated credentials from the cache and authenticating new ones with the given provider.
+     */
+    public AuthenticationProvider cached(AuthenticationProvider provider) {
+        return new AuthenticationProvider() {
+            @Override
+            public Authentication authenticate(Authentication authentication) {
+                String cacheKey = key(authentication);
+                Authentication cached = authentications.getIfPresent(cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
+                // hashed outside the cache, so other keys are not blocked; an exception propagates and nothing is cached
+                Authentication authenticated = provider.authenticate(authentication);
+                if (authenticated != null) {
+                    authentications.put(cacheKey, authenticated);
+                }
+                return authenticated;
+            }
+
+            @Override
+            public boolean supports(Class<?> authentication) {
+                return provider.supports(authentication);
+            }
+        };
+    }
+
+    /**
+     * Drops the authentications of the user now and once more after the commit, so an authentication of the old state
+     * read concurrently in between does not survive.
+     */
+    public void evictUser(long userId) {
+        log.debug("Evict authentications of userId = {}", userId);
+        evict(userId);
+        afterCommit(() -> evict(userId));
+    }
+
+    private void evict(long userId) {
+        authentications.asMap().values().removeIf(authentication ->
+                authentication.getPrincipal() instanceof AuthorizedUser user && user.id() == userId);
+    }
+
+    private String key(Authentication authentication) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            String credentials = authentication.getName() + ":" + authentication.getCredentials();
+            return Base64.getEncoder().encodeToString(mac.doFinal(credentials.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
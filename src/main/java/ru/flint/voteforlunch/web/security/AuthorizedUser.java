@@ -1,21 +1,93 @@
 package ru.flint.voteforlunch.web.security;
 
 import jakarta.validation.constraints.NotNull;
-import lombok.Getter;
+import lombok.EqualsAndHashCode;
 import lombok.ToString;
+import org.springframework.security.core.userdetails.UserDetails;
+import ru.flint.voteforlunch.model.Role;
 import ru.flint.voteforlunch.model.User;
-@Getter
-@ToString(of = "user")
-public class AuthorizedUser extends org.springframework.security.core.userdetails.User{
 
-    private final User user;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The principal of an authenticated request: the user id, email and roles, without the user entity.
+ * <p>
+ * The password hash is only known while the credentials are checked, an authenticated principal is a copy
+ * {@link #withoutPassword() without it}, so it is not kept in the authentication cache or the security context.
+ */
+@ToString(exclude = "password")
+@EqualsAndHashCode(of = "id")
+public class AuthorizedUser implements UserDetails {
+
+    private final long id;
+    private final String email;
+    private final String password;
+    private final Set<Role> roles;
+
+    public AuthorizedUser(long id, String email, String password, Set<Role> roles) {
+        this.id = id;
+        this.email = email;
+        this.password = password;
+        this.roles = Collections.unmodifiableSet(roles.isEmpty() ? EnumSet.noneOf(Role.class) : EnumSet.copyOf(roles));
+    }
+
+    /**
+     * The user of an access token, the password is not known.
+     */
+    public AuthorizedUser(long id, String email, Set<Role> roles) {
+        this(id, email, null, roles);
+    }
 
     public AuthorizedUser(@NotNull User user) {
-        super(user.getEmail(), user.getPassword(), user.getRoles());
-        this.user = user;
+        this(user.getId(), user.getEmail(), user.getPassword(), user.getRoles());
+    }
+
+    public AuthorizedUser withoutPassword() {
+        return password == null ? this : new AuthorizedUser(id, email, roles);
     }
 
     public long id() {
-        return user.getId();
+        return id;
+    }
+
+    public Set<Role> roles() {
+        return roles;
+    }
+
+    @Override
+    public Set<Role> getAuthorities() {
+        return roles;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
     }
 }
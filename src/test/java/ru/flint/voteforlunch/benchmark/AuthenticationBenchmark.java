@@ -0,0 +1,118 @@
+package ru.flint.voteforlunch.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.flint.voteforlunch.web.controller.AuthController;
+import ru.flint.voteforlunch.web.controller.VoteController;
+import ru.flint.voteforlunch.web.json.JsonUtil;
+import ru.flint.voteforlunch.web.security.AccessToken;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-request cost of authentication: one client reads the cached votes distribution of yesterday over HTTP with
+ * HTTP Basic, with HTTP Basic and the authentication cache, and with an access token.
+ * <p>
+ * The seeded passwords are stored as plain text, so the user gets a BCrypt password here, as a registered user
+ * would have. Without the cache every Basic request reads the user and hashes the password.
+ */
+@Tag("benchmark")
+class AuthenticationBenchmark {
+    private static final int WARMUP = 100;
+    private static final int REQUESTS = 500;
+    private static final String EMAIL = "user@ya.ru";
+    private static final String PASSWORD = "password";
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void compareBasicAndToken() throws Exception {
+        Result basic;
+        try (ConfigurableApplicationContext context = start("auth-cache.maximum-size=0")) {
+            basic = measure(url(context), basicAuthorization());
+        }
+        Result cached;
+        Result token;
+        try (ConfigurableApplicationContext context = start()) {
+            cached = measure(url(context), basicAuthorization());
+            token = measure(url(context), "Bearer " + issueToken(context));
+        }
+        System.out.printf("Authentication, %d sequential requests:%n", REQUESTS);
+        System.out.printf("  HTTP Basic:        %s%n", basic);
+        System.out.printf("  HTTP Basic cached: %s%n", cached);
+        System.out.printf("  access token:      %s%n", token);
+    }
+
+    private static ConfigurableApplicationContext start(String... properties) {
+        String[] all = Arrays.copyOf(properties, properties.length + 1);
+        all[properties.length] = "spring.cache.type=caffeine";
+        ConfigurableApplicationContext context = BenchmarkContext.start(all);
+        String hash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+        context.getBean(JdbcTemplate.class).update("UPDATE users SET password = ? WHERE email = ?", hash, EMAIL);
+        return context;
+    }
+
+    private Result measure(String url, String authorization) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).header("Authorization", authorization).build();
+        for (int i = 0; i < WARMUP; i++) {
+            send(request);
+        }
+        long[] nanos = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            send(request);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return new Result(Arrays.stream(nanos).average().orElseThrow() / 1e3, nanos[(int) (REQUESTS * 0.99) - 1] / 1e3);
+    }
+
+    private void send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+    }
+
+    private String issueToken(ConfigurableApplicationContext context) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base(context) + AuthController.REST_URL + "/token"))
+                .header("Authorization", basicAuthorization())
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return JsonUtil.readValue(response.body(), AccessToken.class).accessToken();
+    }
+
+    private static String url(ConfigurableApplicationContext context) {
+        LocalDate yesterday = LocalDate.now(context.getBean(Clock.class)).minusDays(1);
+        return base(context) + VoteController.REST_URL + "/distribution?date=" + yesterday;
+    }
+
+    private static String base(ConfigurableApplicationContext context) {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    private static String basicAuthorization() {
+        return "Basic " + Base64.getEncoder().encodeToString((EMAIL + ":" + PASSWORD).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Result(double meanMicros, double p99Micros) {
+        @Override
+        public String toString() {
+            return String.format("mean %.0f us, p99 %.0f us", meanMicros, p99Micros);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.flint.voteforlunch.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.flint.voteforlunch.TestClockConfiguration;
+import ru.flint.voteforlunch.VoteforlunchApplication;
+
+import java.time.Clock;
+import java.util.stream.Stream;
+
+/**
+ * Starts the whole application with the test clock, seeded data and quiet logging, so benchmarks measure the code
+ * rather than SQL logging. Every context gets a fresh database.
+ */
+public class BenchmarkContext {
+    private static final String[] QUIET = {
+            "server.port=0",
+            "spring.jpa.show-sql=false",
+            "spring.jpa.properties.hibernate.use_sql_comments=false",
+            "logging.level.root=WARN",
+            "logging.level.ru.flint.voteforlunch=WARN",
+            "logging.level.org.springframework.orm.jpa=WARN",
+            "logging.level.org.springframework.security=WARN"
+    };
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        return run(new SpringApplicationBuilder(VoteforlunchApplication.class, TestClockConfiguration.class), properties);
+    }
+
+    /**
+     * Starts the application with the given clock instead of the fixed test clock.
+     */
+    public static ConfigurableApplicationContext start(Clock clock, String... properties) {
+        return run(new SpringApplicationBuilder(VoteforlunchApplication.class)
+                .initializers(context -> context.getBeanFactory().registerSingleton("clock", clock)), properties);
+    }
+
+    private static ConfigurableApplicationContext run(SpringApplicationBuilder application, String... properties) {
+        // passed as command line arguments to take precedence over application.yml
+        return application
+                .profiles("test")
+                .run(Stream.concat(Stream.of(QUIET), Stream.of(properties)).map(property -> "--" + property)
+                        .toArray(String[]::new));
+    }
+}
@@ -0,0 +1,118 @@
+package ru.flint.voteforlunch.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.flint.voteforlunch.model.*;
+import ru.flint.voteforlunch.repository.DishRepository;
+import ru.flint.voteforlunch.repository.MenuRepository;
+import ru.flint.voteforlunch.repository.RestaurantRepository;
+import ru.flint.voteforlunch.repository.UserRepository;
+import ru.flint.voteforlunch.service.MenuPublishService;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Insert throughput of user seeding and bulk menu creation through JPA, without and with JDBC batching.
+ * <p>
+ * Without batching ({@code hibernate.jdbc.batch_size=1}) every entity is one INSERT round trip, as with the former
+ * IDENTITY ids, which made Hibernate insert at once to read the generated id. With sequence ids allocated in blocks
+ * Hibernate sends the inserts of a flush in batches, ordered by table. {@link MenuPublishService} with plain JDBC
+ * batches is measured as well. Every run inserts {@value #USERS} users with their roles and {@value #MENUS} menus of
+ * {@value #ITEMS} items each in one transaction.
+ */
+@Tag("benchmark")
+class InsertBatchingBenchmark {
+    private static final int USERS = 2000;
+    private static final int MENUS = 300;
+    private static final int ITEMS = 5;
+    private static final int WARMUP = 3;
+    private static final int ITERATIONS = 5;
+
+    @Test
+    void compareUnbatchedAndBatchedInserts() {
+        Result unbatched = measure("spring.jpa.properties.hibernate.jdbc.batch_size=1",
+                "spring.jpa.properties.hibernate.order_inserts=false");
+        Result batched = measure();
+        System.out.printf("Inserts of %d users and %d menus with %d items:%n", USERS, MENUS, ITEMS);
+        System.out.printf("  users, JPA: unbatched %.0f rows/s, batched %.0f rows/s (x%.1f)%n",
+                unbatched.users(), batched.users(), batched.users() / unbatched.users());
+        System.out.printf("  menus, JPA: unbatched %.0f rows/s, batched %.0f rows/s (x%.1f)%n",
+                unbatched.menus(), batched.menus(), batched.menus() / unbatched.menus());
+        System.out.printf("  menus, MenuPublishService: %.0f rows/s%n", batched.published());
+    }
+
+    private static Result measure(String... properties) {
+        try (ConfigurableApplicationContext context = BenchmarkContext.start(properties)) {
+            TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+            UserRepository userRepository = context.getBean(UserRepository.class);
+            MenuRepository menuRepository = context.getBean(MenuRepository.class);
+            MenuPublishService publishService = context.getBean(MenuPublishService.class);
+            List<Restaurant> restaurants = context.getBean(RestaurantRepository.class).findAll();
+            List<Dish> dishes = context.getBean(DishRepository.class).findAll();
+            LocalDate start = LocalDate.now(context.getBean(Clock.class)).plusDays(1);
+            int[] run = {0};
+
+            // rows: a user and a role, a menu and its items
+            double users = rate(USERS * 2, () -> {
+                int prefix = run[0]++;
+                List<User> batch = new ArrayList<>(USERS);
+                for (int i = 0; i < USERS; i++) {
+                    batch.add(new User("bench" + prefix + "-" + i + "@ya.ru", "bench", "bench", "{noop}bench", true,
+                            Set.of(Role.USER)));
+                }
+                transactionTemplate.executeWithoutResult(status -> userRepository.saveAll(batch));
+            });
+            double menus = rate(MENUS * (1 + ITEMS), () -> {
+                List<Menu> batch = menus(restaurants, dishes, start.plusDays((long) run[0]++ * MENUS));
+                transactionTemplate.executeWithoutResult(status -> menuRepository.saveAll(batch));
+            });
+            double published = rate(MENUS * (1 + ITEMS), () ->
+                    publishService.publish(menus(restaurants, dishes, start.plusDays((long) run[0]++ * MENUS))));
+            // besides the seeded ones
+            assertThat(menuRepository.count()).isEqualTo(4 + 2L * (WARMUP + ITERATIONS) * MENUS);
+            return new Result(users, menus, published);
+        }
+    }
+
+    // one menu a restaurant and a date, restaurants are few
+    private static List<Menu> menus(List<Restaurant> restaurants, List<Dish> dishes, LocalDate from) {
+        IntFunction<Menu> menu = i -> {
+            Menu created = new Menu();
+            created.setMenuDate(from.plusDays(i / restaurants.size()));
+            created.setRestaurant(restaurants.get(i % restaurants.size()));
+            for (int item = 0; item < ITEMS; item++) {
+                created.addMenuItem(new MenuItem(dishes.get(item % dishes.size()), created, 10 + item));
+            }
+            return created;
+        };
+        List<Menu> menus = new ArrayList<>(MENUS);
+        for (int i = 0; i < MENUS; i++) {
+            menus.add(menu.apply(i));
+        }
+        return menus;
+    }
+
+    // rows per second, averaged over the measured runs
+    private static double rate(int rows, Runnable insert) {
+        for (int i = 0; i < WARMUP; i++) {
+            insert.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            insert.run();
+        }
+        return (double) rows * ITERATIONS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private record Result(double users, double menus, double published) {
+    }
+}
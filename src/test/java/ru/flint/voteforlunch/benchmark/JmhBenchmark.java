@@ -0,0 +1,42 @@
+package ru.flint.voteforlunch.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the JMH microbenchmarks of the {@code jmh} package: voting, menus, DTO mapping, validation and JSON.
+ * <p>
+ * Results are written as JSON to {@value #RESULT_FILE}, so runs of different builds can be diffed. The benchmarks to
+ * run and the number of forks are set with {@code -Djmh.include=<regexp>} and {@code -Djmh.forks=<n>}.
+ */
+@Tag("benchmark")
+class JmhBenchmark {
+    private static final String RESULT_FILE = "target/jmh-result.json";
+
+    @Test
+    void runJmhBenchmarks() throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(System.getProperty("jmh.include", JmhBenchmark.class.getPackageName() + ".jmh."))
+                .forks(Integer.getInteger("jmh.forks", 1))
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .resultFormat(ResultFormatType.JSON)
+                .result(RESULT_FILE)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        assertThat(results).isNotEmpty();
+    }
+}
@@ -0,0 +1,94 @@
+package ru.flint.voteforlunch.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.flint.voteforlunch.config.VirtualThreadsConfiguration;
+import ru.flint.voteforlunch.web.controller.VoteController;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput and p99 latency of 2000 concurrent voters, the users seeded by InitializeData, over HTTP with platform
+ * and with virtual request threads.
+ * <p>
+ * Every voter changes the vote several times, one request after another, all voters run at once. Virtual threads
+ * need Java 21, on an older runtime only the platform threads are measured.
+ */
+@Tag("benchmark")
+class VirtualThreadsLoadBenchmark {
+    private static final int VOTERS = 2000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    void comparePlatformAndVirtualThreads() {
+        Result platform = measure(false);
+        System.out.printf("Load of %d concurrent voters, %d votes each:%n", VOTERS, ROUNDS);
+        System.out.printf("  platform threads: %s%n", platform);
+        if (VirtualThreadsConfiguration.isSupported()) {
+            System.out.printf("  virtual threads: %s%n", measure(true));
+        } else {
+            System.out.printf("  virtual threads: skipped, they need Java 21, running on %s%n", Runtime.version());
+        }
+    }
+
+    private static Result measure(boolean virtual) {
+        try (ConfigurableApplicationContext context = BenchmarkContext.start(VirtualThreadsConfiguration.ENABLED_PROPERTY + "=" + virtual)) {
+            String url = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + VoteController.REST_URL;
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMinutes(1)).build();
+            long[] latencies = new long[VOTERS * ROUNDS];
+            AtomicInteger failures = new AtomicInteger();
+            long start = System.nanoTime();
+            CompletableFuture.allOf(IntStream.range(0, VOTERS)
+                    .mapToObj(voter -> vote(client, url, voter, 0, latencies, failures))
+                    .toArray(CompletableFuture[]::new)).join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            assertThat(failures).hasValue(0);
+            Arrays.sort(latencies);
+            return new Result(latencies.length / seconds,
+                    latencies[latencies.length / 2] / 1e6,
+                    latencies[(int) (latencies.length * 0.99)] / 1e6);
+        }
+    }
+
+    // the votes of one voter are sequential
+    private static CompletableFuture<Void> vote(HttpClient client, String url, int voter, int round,
+                                                long[] latencies, AtomicInteger failures) {
+        if (round == ROUNDS) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String credentials = "user" + voter + "@gmail.com:user" + voter;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "?restaurantId=" + (round % 2 + 1)))
+                .header("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)))
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build();
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenCompose(response -> {
+                    latencies[voter * ROUNDS + round] = System.nanoTime() - start;
+                    if (response.statusCode() != 200) {
+                        failures.incrementAndGet();
+                    }
+                    return vote(client, url, voter, round + 1, latencies, failures);
+                });
+    }
+
+    private record Result(double votesPerSecond, double medianMillis, double p99Millis) {
+        @Override
+        public String toString() {
+            return String.format("%.0f votes/s, median %.1f ms, p99 %.1f ms", votesPerSecond, medianMillis, p99Millis);
+        }
+    }
+}
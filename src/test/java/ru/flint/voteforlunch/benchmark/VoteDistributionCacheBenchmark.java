@@ -0,0 +1,114 @@
+package ru.flint.voteforlunch.benchmark;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.repository.VoteRepository;
+import ru.flint.voteforlunch.service.VoteService;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Votes distribution reads during a voting burst: every seeded user votes, every tenth withdraws and votes again,
+ * and each polls the distribution of today and of a past date. Users vote concurrently.
+ * <p>
+ * Today's distribution comes from the live tally, which is updated in place and re-sorted on the next read, past
+ * dates come from a cache that votes do not touch. For comparison the same burst runs against a cache that evicts
+ * today's entry on every vote and all entries on every withdrawal, reloading from the database on a miss, as the
+ * distribution cache used to work. The test profile disables the Spring caches, so both caches are built here.
+ */
+@Tag("benchmark")
+class VoteDistributionCacheBenchmark {
+    private static final int THREADS = 16;
+    private static final int READS_PER_VOTE = 5;
+    private static final int WITHDRAWAL_EVERY = 10;
+    private static final long FIRST_USER_ID = 3;
+    private static final long LAST_USER_ID = 2002;
+
+    @Test
+    void compareInPlaceUpdateAndEviction() throws InterruptedException {
+        try (ConfigurableApplicationContext context = BenchmarkContext.start()) {
+            VoteService service = context.getBean(VoteService.class);
+            VoteRepository repository = context.getBean(VoteRepository.class);
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            LocalDate today = LocalDate.now(context.getBean(Clock.class));
+            LocalDate pastDate = today.minusDays(2);
+
+            Cache<LocalDate, List<VoteDistribution>> pastDates = Caffeine.newBuilder().recordStats().build();
+            double hitsBefore = tallyReads(meterRegistry, "hit");
+            double missesBefore = tallyReads(meterRegistry, "miss");
+            double inPlaceSeconds = burst(service, today, pastDate,
+                    date -> date.equals(today)
+                            ? service.getDistributionOnDate(date)
+                            : pastDates.get(date, repository::getDistributionOnDate),
+                    withdrawal -> {
+                    });
+            double hits = tallyReads(meterRegistry, "hit") - hitsBefore + pastDates.stats().hitCount();
+            double misses = tallyReads(meterRegistry, "miss") - missesBefore + pastDates.stats().missCount();
+
+            Cache<LocalDate, List<VoteDistribution>> evicting = Caffeine.newBuilder().recordStats().build();
+            double evictingSeconds = burst(service, today, pastDate,
+                    date -> evicting.get(date, repository::getDistributionOnDate),
+                    withdrawal -> {
+                        if (withdrawal) {
+                            evicting.invalidateAll();
+                        } else {
+                            evicting.invalidate(today);
+                        }
+                    });
+            CacheStats evicted = evicting.stats();
+
+            assertThat(service.getDistributionOnDate(today))
+                    .containsExactlyInAnyOrderElementsOf(repository.getDistributionOnDate(today));
+            long reads = 2 * READS_PER_VOTE * (LAST_USER_ID - FIRST_USER_ID + 1);
+            System.out.printf("Votes distribution burst, %d reads:%n", reads);
+            System.out.printf("  in-place tally: hit rate %.1f%%, %d database reads, %.0f reads/s%n",
+                    100 * hits / (hits + misses), pastDates.stats().missCount(), reads / inPlaceSeconds);
+            System.out.printf("  evicting cache: hit rate %.1f%%, %d database reads, %.0f reads/s%n",
+                    100 * evicted.hitRate(), evicted.missCount(), reads / evictingSeconds);
+        }
+    }
+
+    private static double burst(VoteService service, LocalDate today, LocalDate pastDate,
+                                Function<LocalDate, List<VoteDistribution>> distribution,
+                                Consumer<Boolean> onChange) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        for (long userId = FIRST_USER_ID; userId <= LAST_USER_ID; userId++) {
+            long voter = userId;
+            executor.execute(() -> {
+                if (voter % WITHDRAWAL_EVERY == 0) {
+                    service.delete(voter);
+                    onChange.accept(true);
+                }
+                service.saveAndReturnWithDetails(voter % 2 + 1, voter);
+                onChange.accept(false);
+                for (int read = 0; read < READS_PER_VOTE; read++) {
+                    distribution.apply(today);
+                    distribution.apply(pastDate);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private static double tallyReads(MeterRegistry meterRegistry, String result) {
+        return meterRegistry.get("vote.tally.distribution.reads").tag("result", result).counter().count();
+    }
+}
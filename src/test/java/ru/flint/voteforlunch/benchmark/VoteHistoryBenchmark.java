@@ -0,0 +1,78 @@
+package ru.flint.voteforlunch.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.flint.voteforlunch.model.VotePage;
+import ru.flint.voteforlunch.service.VoteService;
+import ru.flint.voteforlunch.web.dto.VoteDTO;
+import ru.flint.voteforlunch.web.mapper.VoteMapper;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Latency of the vote history of a user with five years of votes, in a table of a few hundred thousand votes.
+ * <p>
+ * The unbounded call loads and maps the whole history, as {@code GET /votes} used to. The keyset pages load
+ * {@value #PAGE_SIZE} votes before the cursor through the (user_id, vote_date desc, vote_time desc) index, so the
+ * deepest page costs as much as the first one.
+ */
+@Tag("benchmark")
+class VoteHistoryBenchmark {
+    private static final long USER_ID = 2;
+    private static final int HISTORY_DAYS = 5 * 365;
+    private static final int PAGE_SIZE = 20;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    @Test
+    void compareUnboundedAndKeysetPages() {
+        try (ConfigurableApplicationContext context = BenchmarkContext.start()) {
+            VoteService service = context.getBean(VoteService.class);
+            VoteMapper mapper = context.getBean(VoteMapper.class);
+            LocalDate today = LocalDate.now(context.getBean(Clock.class));
+            // seeded users vote on today and the two previous dates, the history goes further back
+            int rows = context.getBean(JdbcTemplate.class).update("""
+                    INSERT INTO vote (id, user_id, vote_date, restaurant_id, vote_time)
+                    SELECT NEXT VALUE FOR vote_seq, u.x, DATEADD(DAY, -d.x, CAST(? AS DATE)), MOD(u.x + d.x, 2) + 1, TIME '09:00'
+                    FROM SYSTEM_RANGE(1, 200) u CROSS JOIN SYSTEM_RANGE(3, ?) d
+                    """, today, HISTORY_DAYS);
+
+            List<VoteDTO> history = service.getAllForUser(USER_ID).stream().map(mapper::toDTO).toList();
+            LocalDate deepCursor = history.get(history.size() - PAGE_SIZE).getVoteDate();
+            assertThat(service.getPageForUser(USER_ID, deepCursor, PAGE_SIZE).votes()).hasSize(PAGE_SIZE - 1);
+
+            double unbounded = measure(() -> service.getAllForUser(USER_ID).stream().map(mapper::toDTO).toList());
+            double firstPage = measure(() -> page(service, mapper, null));
+            double deepPage = measure(() -> page(service, mapper, deepCursor));
+
+            System.out.printf("Vote history of %d votes in %d rows, pages of %d:%n", history.size(), rows, PAGE_SIZE);
+            System.out.printf("  unbounded: %.3f ms%n", unbounded);
+            System.out.printf("  first page: %.3f ms%n", firstPage);
+            System.out.printf("  deepest page: %.3f ms (x%.1f faster than unbounded)%n", deepPage, unbounded / deepPage);
+        }
+    }
+
+    private static List<VoteDTO> page(VoteService service, VoteMapper mapper, LocalDate cursor) {
+        VotePage page = service.getPageForUser(USER_ID, cursor, PAGE_SIZE);
+        return page.votes().stream().map(mapper::toDTO).toList();
+    }
+
+    // average milliseconds per call
+    private static double measure(Supplier<List<VoteDTO>> call) {
+        for (int i = 0; i < WARMUP; i++) {
+            call.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.get();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+}
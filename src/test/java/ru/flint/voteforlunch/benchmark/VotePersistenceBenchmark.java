@@ -0,0 +1,80 @@
+package ru.flint.voteforlunch.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.flint.voteforlunch.model.Role;
+import ru.flint.voteforlunch.model.User;
+import ru.flint.voteforlunch.service.VoteTally;
+import ru.flint.voteforlunch.service.VoteWriteBehind;
+import ru.flint.voteforlunch.web.controller.VoteController;
+import ru.flint.voteforlunch.web.security.AuthorizedUser;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sustained votes per second of the synchronous and the write-behind vote persistence.
+ * <p>
+ * Every seeded user changes the vote several times, users vote concurrently from a pool of request threads. The write-behind time includes
+ * the final flush, so both numbers stand for votes that reached the database.
+ */
+@Tag("benchmark")
+class VotePersistenceBenchmark {
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 5;
+    private static final long FIRST_USER_ID = 3;
+    private static final long LAST_USER_ID = 2002;
+
+    @Test
+    void compareSynchronousAndWriteBehind() throws InterruptedException {
+        double synchronous = measure(false);
+        double writeBehind = measure(true);
+        System.out.printf("Vote persistence: synchronous %.0f votes/s, write-behind %.0f votes/s (x%.1f)%n",
+                synchronous, writeBehind, writeBehind / synchronous);
+    }
+
+    private static double measure(boolean writeBehind) throws InterruptedException {
+        try (ConfigurableApplicationContext context = BenchmarkContext.start("vote.write-behind.enabled=" + writeBehind)) {
+            VoteController controller = context.getBean(VoteController.class);
+            LocalDate today = LocalDate.now(context.getBean(Clock.class));
+            // the seeded votes of today may be later than the test clock and would outlive every change
+            context.getBean(JdbcTemplate.class).update("DELETE FROM vote WHERE vote_date = ?", today);
+            context.getBean(VoteTally.class).invalidate();
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            long start = System.nanoTime();
+            for (long userId = FIRST_USER_ID; userId <= LAST_USER_ID; userId++) {
+                AuthorizedUser user = authorizedUser(userId);
+                // votes of one user are sequential, so the last one must win
+                executor.execute(() -> {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        controller.changeVote(round % 2 + 1, null, user);
+                    }
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+            context.getBean(VoteWriteBehind.class).flush();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Long restaurantId = context.getBean(JdbcTemplate.class).queryForObject(
+                    "SELECT MAX(restaurant_id) FROM vote WHERE vote_date = ? AND user_id BETWEEN ? AND ?",
+                    Long.class, today, FIRST_USER_ID, LAST_USER_ID);
+            assertThat(restaurantId).isEqualTo((ROUNDS - 1) % 2 + 1L);
+            return ROUNDS * (LAST_USER_ID - FIRST_USER_ID + 1) / seconds;
+        }
+    }
+
+    private static AuthorizedUser authorizedUser(long id) {
+        User user = new User("user" + id + "@benchmark.ru", "user", "user", "{noop}user", true, Set.of(Role.USER));
+        user.setId(id);
+        return new AuthorizedUser(user);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.flint.voteforlunch.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.flint.voteforlunch.benchmark.load.LoadGenerator;
+import ru.flint.voteforlunch.benchmark.load.LoadProfile;
+import ru.flint.voteforlunch.benchmark.load.LoadReport;
+import ru.flint.voteforlunch.benchmark.load.SimulatedClock;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput, latency and errors of a voting day replayed by the {@link LoadGenerator} in a minute: menu browsing,
+ * distribution polling, the vote spike right before the cutoff and late vote changes.
+ * <p>
+ * The day is set with the {@code load.*} system properties of {@link LoadProfile}, the application runs on the same
+ * {@link SimulatedClock} as the generator.
+ */
+@Tag("benchmark")
+class VotingDayLoadBenchmark {
+    private static final LocalDate DATE = LocalDate.of(2022, 11, 15);
+    private static final LocalTime CUTOFF = LocalTime.of(11, 0);
+
+    @Test
+    void replayVotingDay() {
+        LoadProfile profile = LoadProfile.fromSystemProperties(DATE, CUTOFF);
+        ZoneId zone = ZoneId.of("GMT");
+        SimulatedClock clock = new SimulatedClock(LocalDateTime.of(DATE, profile.start()).atZone(zone).toInstant(),
+                profile.speedup(), zone);
+        try (ConfigurableApplicationContext context = BenchmarkContext.start(clock,
+                "vote.time.constraint=" + CUTOFF, "spring.cache.type=caffeine",
+                // rejected late changes are expected
+                "logging.level.ru.flint.voteforlunch.web.GlobalExceptionHandler=OFF")) {
+            String url = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            System.out.printf("Voting day of %d users, %s arrivals, %s to %s replayed in %s:%n",
+                    profile.users(), profile.curve(), profile.start(), profile.end(), profile.duration());
+            LoadReport report = new LoadGenerator(url, profile, clock).run();
+            report.print(System.out);
+            // an overloaded application may answer late or not at all, but it never accepts a late change
+            assertThat(report.errors("late-change")).doesNotContainKey("200");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.flint.voteforlunch.benchmark.jmh;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.flint.voteforlunch.benchmark.BenchmarkContext;
+
+/**
+ * The application shared by the JMH benchmarks of one JVM, started once with the Caffeine caches enabled.
+ */
+final class JmhContext {
+    private static ConfigurableApplicationContext context;
+
+    private JmhContext() {
+    }
+
+    static synchronized ConfigurableApplicationContext get() {
+        if (context == null) {
+            context = BenchmarkContext.start("spring.cache.type=caffeine");
+            Runtime.getRuntime().addShutdownHook(new Thread(context::close));
+        }
+        return context;
+    }
+}
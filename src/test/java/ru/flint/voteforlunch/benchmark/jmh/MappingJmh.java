@@ -0,0 +1,57 @@
+package ru.flint.voteforlunch.benchmark.jmh;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.flint.voteforlunch.model.Menu;
+import ru.flint.voteforlunch.model.Vote;
+import ru.flint.voteforlunch.repository.MenuRepository;
+import ru.flint.voteforlunch.repository.VoteRepository;
+import ru.flint.voteforlunch.web.dto.MenuResponseDTO;
+import ru.flint.voteforlunch.web.dto.VoteDTO;
+import ru.flint.voteforlunch.web.mapper.MenuMapper;
+import ru.flint.voteforlunch.web.mapper.VoteMapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DTO conversions and JSON serialization of a menu.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MappingJmh {
+    private MenuMapper menuMapper;
+    private VoteMapper voteMapper;
+    private ObjectMapper objectMapper;
+    private Menu menu;
+    private Vote vote;
+    private MenuResponseDTO menuResponse;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ConfigurableApplicationContext context = JmhContext.get();
+        menuMapper = context.getBean(MenuMapper.class);
+        voteMapper = context.getBean(VoteMapper.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        menu = context.getBean(MenuRepository.class).findAllByIdWithAllData(1L).orElseThrow();
+        vote = context.getBean(VoteRepository.class).getByIdAndUserId(1L, 1L).orElseThrow();
+        menuResponse = menuMapper.toDTO(menu);
+    }
+
+    @Benchmark
+    public MenuResponseDTO menuToDto() {
+        return menuMapper.toDTO(menu);
+    }
+
+    @Benchmark
+    public VoteDTO voteToDto() {
+        return voteMapper.toDTO(vote);
+    }
+
+    @Benchmark
+    public String menuResponseToJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(menuResponse);
+    }
+}
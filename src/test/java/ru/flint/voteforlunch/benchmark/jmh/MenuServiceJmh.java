@@ -0,0 +1,52 @@
+package ru.flint.voteforlunch.benchmark.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.flint.voteforlunch.model.Menu;
+import ru.flint.voteforlunch.service.MenuService;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Menus on a date with a cold and a warm cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MenuServiceJmh {
+    private MenuService service;
+    private Cache menusCache;
+    private LocalDate menuDate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ConfigurableApplicationContext context = JmhContext.get();
+        service = context.getBean(MenuService.class);
+        menusCache = Objects.requireNonNull(context.getBean(CacheManager.class).getCache("menus"));
+        menuDate = LocalDate.now(context.getBean(Clock.class)).minusDays(2);
+    }
+
+    @Benchmark
+    public List<Menu> allWithRestaurantsWarmCache() {
+        return service.getAllWithRestaurants(menuDate);
+    }
+
+    @Benchmark
+    public List<Menu> allWithRestaurantsColdCache(ColdCache coldCache) {
+        return service.getAllWithRestaurants(menuDate);
+    }
+
+    @State(Scope.Thread)
+    public static class ColdCache {
+        @Setup(Level.Invocation)
+        public void evict(MenuServiceJmh benchmark) {
+            benchmark.menusCache.clear();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.flint.voteforlunch.benchmark.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import ru.flint.voteforlunch.util.annotation.NoHtmlValidator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The no-HTML validation of a dish name, it runs on every written name and needs no application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValidationJmh {
+    private final NoHtmlValidator validator = new NoHtmlValidator();
+
+    @Benchmark
+    public boolean noHtmlIsValid() {
+        return validator.isValid("Grilled chicken with vegetables & rice", null);
+    }
+}
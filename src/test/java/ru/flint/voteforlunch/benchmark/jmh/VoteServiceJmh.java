@@ -0,0 +1,63 @@
+package ru.flint.voteforlunch.benchmark.jmh;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.flint.voteforlunch.model.Vote;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.service.VoteService;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vote persistence and the distribution of a closed date with a cold and a warm cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VoteServiceJmh {
+    private static final long FIRST_USER_ID = 3;
+    private static final long USERS = 2000;
+
+    private VoteService service;
+    private Cache distributionCache;
+    private LocalDate closedDate;
+    private long votes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ConfigurableApplicationContext context = JmhContext.get();
+        service = context.getBean(VoteService.class);
+        distributionCache = Objects.requireNonNull(context.getBean(CacheManager.class).getCache("voteDistribution"));
+        closedDate = LocalDate.now(context.getBean(Clock.class)).minusDays(1);
+    }
+
+    @Benchmark
+    public Vote saveAndReturnWithDetails() {
+        long vote = votes++;
+        return service.saveAndReturnWithDetails(vote / USERS % 2 + 1, FIRST_USER_ID + vote % USERS);
+    }
+
+    @Benchmark
+    public List<VoteDistribution> distributionOnDateWarmCache() {
+        return service.getDistributionOnDate(closedDate);
+    }
+
+    @Benchmark
+    public List<VoteDistribution> distributionOnDateColdCache(ColdCache coldCache) {
+        return service.getDistributionOnDate(closedDate);
+    }
+
+    @State(Scope.Thread)
+    public static class ColdCache {
+        @Setup(Level.Invocation)
+        public void evict(VoteServiceJmh benchmark) {
+            benchmark.distributionCache.clear();
+        }
+    }
+}
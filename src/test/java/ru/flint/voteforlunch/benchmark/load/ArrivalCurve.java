@@ -0,0 +1,48 @@
+package ru.flint.voteforlunch.benchmark.load;
+
+/**
+ * How the first votes of the day are spread over the voting window, as the share of the window passed when a voter
+ * arrives.
+ */
+public enum ArrivalCurve {
+    /**
+     * Voters arrive evenly.
+     */
+    UNIFORM {
+        @Override
+        double arrival(double quantile) {
+            return quantile;
+        }
+    },
+    /**
+     * The arrival rate grows linearly until the cutoff.
+     */
+    RAMP {
+        @Override
+        double arrival(double quantile) {
+            return Math.sqrt(quantile);
+        }
+    },
+    /**
+     * A trickle most of the window, then {@value #SPIKE_SHARE} of the voters in the last {@value #SPIKE_WINDOW} of it,
+     * right before the cutoff.
+     */
+    SPIKE {
+        @Override
+        double arrival(double quantile) {
+            double spikeStart = 1 - SPIKE_WINDOW;
+            double trickle = 1 - SPIKE_SHARE;
+            return quantile < trickle
+                    ? quantile / trickle * spikeStart
+                    : spikeStart + (quantile - trickle) / SPIKE_SHARE * SPIKE_WINDOW;
+        }
+    };
+
+    private static final double SPIKE_SHARE = 0.7;
+    private static final double SPIKE_WINDOW = 0.1;
+
+    /**
+     * Share of the voting window passed when the voter of the given quantile arrives, both from 0 to 1.
+     */
+    abstract double arrival(double quantile);
+}
@@ -0,0 +1,165 @@
+package ru.flint.voteforlunch.benchmark.load;
+
+import ru.flint.voteforlunch.web.controller.MenuController;
+import ru.flint.voteforlunch.web.controller.VoteController;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a voting day against a running application over HTTP and reports how it coped.
+ * <p>
+ * The requests of the day are planned up front from the {@link LoadProfile}: menu browsing and a vote per voter
+ * arriving by the arrival curve, vote changes before the cutoff, late vote changes after it, which must be rejected,
+ * and the distribution polling. Each request is sent at its time whether the earlier ones are answered or not, and
+ * its latency is counted from that time, so a stalled application is not hidden by a stalled generator.
+ * <p>
+ * Only the JDK is needed, so it runs against any instance seeded by InitializeData:
+ * <pre>
+ * java -cp target/classes:target/test-classes -Dload.users=500 ru.flint.voteforlunch.benchmark.load.LoadGenerator http://localhost:8080
+ * </pre>
+ * An application with the system clock is loaded in real time, from now until the end of the late changes, so start
+ * it before the cutoff set with {@code -Dload.cutoff}. VotingDayLoadBenchmark replays the day in a minute against an
+ * embedded application running on the same {@link SimulatedClock}.
+ */
+public class LoadGenerator {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(1);
+    private static final Duration MAX_BROWSING = Duration.ofMinutes(5);
+
+    private final String url;
+    private final LoadProfile profile;
+    private final SimulatedClock clock;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+
+    public LoadGenerator(String url, LoadProfile profile, SimulatedClock clock) {
+        this.url = url;
+        this.profile = profile;
+        this.clock = clock;
+    }
+
+    public static void main(String[] args) {
+        String url = args.length > 0 ? args[0] : "http://localhost:8080";
+        ZonedDateTime now = ZonedDateTime.now();
+        LocalTime cutoff = LocalTime.parse(System.getProperty("load.cutoff", "11:00"));
+        if (!now.toLocalTime().isBefore(cutoff)) {
+            throw new IllegalStateException(String.format("The voting day is over, it is after the cutoff %s", cutoff));
+        }
+        LoadProfile profile = LoadProfile.fromSystemProperties(now.toLocalDate(), cutoff)
+                .inRealTime(now.toLocalDate(), now.toLocalTime());
+        new LoadGenerator(url, profile, new SimulatedClock(now.toInstant(), 1, now.getZone()))
+                .run()
+                .print(System.out);
+    }
+
+    public LoadReport run() {
+        List<Request> requests = plan();
+        LoadReport report = new LoadReport();
+        List<CompletableFuture<Void>> responses = new ArrayList<>(requests.size());
+        clock.restart(instant(profile.start()));
+        report.start();
+        for (Request request : requests) {
+            long delayNanos = clock.realDelayUntil(request.at()).toNanos();
+            if (delayNanos > 0) {
+                LockSupport.parkNanos(delayNanos);
+            }
+            responses.add(send(request, System.nanoTime() + Math.min(delayNanos, 0), report));
+        }
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).join();
+        report.end();
+        return report;
+    }
+
+    private CompletableFuture<Void> send(Request request, long scheduledNanos, LoadReport report) {
+        return client.sendAsync(request.http(), HttpResponse.BodyHandlers.discarding())
+                .handle((response, e) -> {
+                    long latency = System.nanoTime() - scheduledNanos;
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        report.record(request.operation(), latency, cause.getClass().getSimpleName(), false);
+                    } else {
+                        report.record(request.operation(), latency, String.valueOf(response.statusCode()),
+                                response.statusCode() == request.expectedStatus());
+                    }
+                    return null;
+                });
+    }
+
+    private List<Request> plan() {
+        Random random = new Random(profile.seed());
+        Instant start = instant(profile.start());
+        Instant cutoff = instant(profile.cutoff());
+        Instant end = instant(profile.end());
+        Duration window = Duration.between(start, cutoff);
+        String today = profile.date().toString();
+        List<Request> requests = new ArrayList<>();
+        for (int voter = 0; voter < profile.users(); voter++) {
+            Instant voted = start.plus(fraction(window, profile.curve().arrival(random.nextDouble())));
+            Instant browsed = voted.minus(fraction(MAX_BROWSING, random.nextDouble()));
+            requests.add(new Request(browsed.isBefore(start) ? start : browsed, "menus", 200,
+                    get(voter, MenuController.REST_URL + "/on-date?date=" + today)));
+            requests.add(new Request(voted, "vote", 201, vote(voter, "POST", random)));
+            if (random.nextDouble() < profile.changeShare()) {
+                Instant changed = voted.plus(fraction(Duration.between(voted, cutoff), random.nextDouble()));
+                requests.add(new Request(changed, "change", 200, vote(voter, "PUT", random)));
+            }
+            if (random.nextDouble() < profile.lateShare()) {
+                // a second past the cutoff at least, so the vote time on the server is after it
+                Instant late = cutoff.plusSeconds(1).plus(fraction(profile.lateWindow(), random.nextDouble()));
+                requests.add(new Request(late, "late-change", 422, vote(voter, "PUT", random)));
+            }
+        }
+        for (int poller = 0; poller < profile.pollers(); poller++) {
+            Instant polled = start.plus(fraction(profile.pollInterval(), random.nextDouble()));
+            for (; polled.isBefore(end); polled = polled.plus(profile.pollInterval())) {
+                requests.add(new Request(polled, "distribution", 200,
+                        get(poller % profile.users(), VoteController.REST_URL + "/distribution?date=" + today)));
+            }
+        }
+        requests.sort(Comparator.comparing(Request::at));
+        return requests;
+    }
+
+    private HttpRequest get(int user, String path) {
+        return request(user, path).GET().build();
+    }
+
+    private HttpRequest vote(int user, String method, Random random) {
+        return request(user, VoteController.REST_URL + "?restaurantId=" + (random.nextInt(2) + 1))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private HttpRequest.Builder request(int user, String path) {
+        String credentials = "user" + user + "@gmail.com:user" + user;
+        return HttpRequest.newBuilder(URI.create(url + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Instant instant(LocalTime time) {
+        return LocalDateTime.of(profile.date(), time).atZone(clock.getZone()).toInstant();
+    }
+
+    private static Duration fraction(Duration duration, double fraction) {
+        return Duration.ofNanos((long) (duration.toNanos() * fraction));
+    }
+
+    private record Request(Instant at, String operation, int expectedStatus, HttpRequest http) {
+    }
+}
@@ -0,0 +1,75 @@
+package ru.flint.voteforlunch.benchmark.load;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Simulated voting day: every voter browses the menus, votes once and may change the vote, some of them too late;
+ * pollers watch the votes distribution all day long.
+ * <p>
+ * Every setting can be overridden with a {@code load.*} system property, e.g. {@code -Dload.users=500
+ * -Dload.curve=RAMP -Dload.duration=PT2M}.
+ *
+ * @param users        voters, the users {@code user0@gmail.com}, {@code user1@gmail.com}, ... seeded by InitializeData
+ * @param curve        arrival of the first votes between {@code start} and {@code cutoff}
+ * @param date         the voting day
+ * @param start        simulated time of the first vote
+ * @param cutoff       {@code vote.time.constraint} of the application, votes can not be changed after it
+ * @param lateWindow   simulated time after the cutoff with late vote changes
+ * @param duration     real time the simulated day from {@code start} to the end of {@code lateWindow} is replayed in
+ * @param changeShare  share of voters changing their vote before the cutoff
+ * @param lateShare    share of voters trying to change their vote after the cutoff
+ * @param pollers      clients polling the votes distribution
+ * @param pollInterval simulated time between the polls of one poller
+ * @param seed         random seed, the same seed replays the same day
+ */
+public record LoadProfile(
+        int users,
+        ArrivalCurve curve,
+        LocalDate date,
+        LocalTime start,
+        LocalTime cutoff,
+        Duration lateWindow,
+        Duration duration,
+        double changeShare,
+        double lateShare,
+        int pollers,
+        Duration pollInterval,
+        long seed) {
+
+    public static LoadProfile fromSystemProperties(LocalDate date, LocalTime cutoff) {
+        return new LoadProfile(
+                Integer.getInteger("load.users", 2000),
+                ArrivalCurve.valueOf(System.getProperty("load.curve", ArrivalCurve.SPIKE.name())),
+                date,
+                LocalTime.parse(System.getProperty("load.start", cutoff.minusHours(2).toString())),
+                cutoff,
+                Duration.parse(System.getProperty("load.late-window", "PT15M")),
+                Duration.parse(System.getProperty("load.duration", "PT1M")),
+                Double.parseDouble(System.getProperty("load.change-share", "0.3")),
+                Double.parseDouble(System.getProperty("load.late-share", "0.1")),
+                Integer.getInteger("load.pollers", 50),
+                Duration.parse(System.getProperty("load.poll-interval", "PT1M")),
+                Long.getLong("load.seed", 1));
+    }
+
+    /**
+     * The same day replayed in real time from now on, for an application running with the system clock.
+     */
+    public LoadProfile inRealTime(LocalDate today, LocalTime now) {
+        return new LoadProfile(users, curve, today, now, cutoff, lateWindow, Duration.between(now, end()),
+                changeShare, lateShare, pollers, pollInterval, seed);
+    }
+
+    /**
+     * How many times faster than the real time the day is replayed.
+     */
+    public double speedup() {
+        return (double) Duration.between(start, end()).toNanos() / duration.toNanos();
+    }
+
+    public LocalTime end() {
+        return cutoff.plus(lateWindow);
+    }
+}
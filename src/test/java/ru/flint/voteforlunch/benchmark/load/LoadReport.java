@@ -0,0 +1,122 @@
+package ru.flint.voteforlunch.benchmark.load;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Outcomes of the requests of a load run, per operation: throughput, latency percentiles and histogram, and the
+ * breakdown of the responses the operation did not expect.
+ */
+public class LoadReport {
+    private static final long[] BUCKET_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000};
+
+    private final Map<String, Operation> operations = new ConcurrentSkipListMap<>();
+    private long startNanos;
+    private long endNanos;
+
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    void end() {
+        endNanos = System.nanoTime();
+    }
+
+    /**
+     * @param outcome status code of the response or the exception of a failed request
+     */
+    void record(String operation, long latencyNanos, String outcome, boolean expected) {
+        operations.computeIfAbsent(operation, name -> new Operation()).record(latencyNanos, outcome, expected);
+    }
+
+    public long requests() {
+        return operations.values().stream().mapToLong(Operation::requests).sum();
+    }
+
+    /**
+     * Count of responses of the operation per outcome it did not expect.
+     */
+    public Map<String, Long> errors(String operation) {
+        Operation stats = operations.get(operation);
+        return stats == null ? Map.of() : new TreeMap<>(stats.errors);
+    }
+
+    public void print(PrintStream out) {
+        double seconds = (endNanos - startNanos) / 1e9;
+        out.printf("%d requests in %.1f s, %.0f requests/s%n", requests(), seconds, requests() / seconds);
+        out.printf("%-14s %8s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "errors");
+        operations.forEach((name, stats) -> out.printf("%-14s %8d %9.1f %9.1f %9.1f %9.1f %9.1f %9d%n",
+                name, stats.requests(), stats.requests() / seconds, stats.percentile(0.5), stats.percentile(0.9),
+                stats.percentile(0.99), stats.percentile(1), stats.unexpected()));
+        out.println("Latency histogram, requests per bucket:");
+        StringBuilder header = new StringBuilder(String.format("%-14s", "operation"));
+        for (long millis : BUCKET_MILLIS) {
+            header.append(String.format(" %7s", "<" + millis));
+        }
+        out.println(header.append(String.format(" %7s", ">=" + BUCKET_MILLIS[BUCKET_MILLIS.length - 1])));
+        operations.forEach((name, stats) -> {
+            StringBuilder row = new StringBuilder(String.format("%-14s", name));
+            for (long count : stats.histogram()) {
+                row.append(String.format(" %7d", count));
+            }
+            out.println(row);
+        });
+        out.println("Unexpected responses:");
+        operations.forEach((name, stats) -> stats.errors.forEach((outcome, count) ->
+                out.printf("  %-14s %-40s %d%n", name, outcome, count)));
+    }
+
+    private static class Operation {
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        private final Map<String, Long> errors = new ConcurrentHashMap<>();
+
+        private void record(long latencyNanos, String outcome, boolean expected) {
+            latencies.add(latencyNanos);
+            if (!expected) {
+                errors.merge(outcome, 1L, Long::sum);
+            }
+        }
+
+        private long requests() {
+            return latencies.size();
+        }
+
+        private long unexpected() {
+            return errors.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        private double percentile(double percentile) {
+            long[] sorted = sorted();
+            return sorted.length == 0 ? 0 : sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1e6;
+        }
+
+        private long[] histogram() {
+            long[] histogram = new long[BUCKET_MILLIS.length + 1];
+            for (long latency : sorted()) {
+                int bucket = 0;
+                while (bucket < BUCKET_MILLIS.length && latency >= BUCKET_MILLIS[bucket] * 1_000_000) {
+                    bucket++;
+                }
+                histogram[bucket]++;
+            }
+            return histogram;
+        }
+
+        private long[] sorted() {
+            long[] sorted;
+            synchronized (latencies) {
+                sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+            }
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package ru.flint.voteforlunch.benchmark.load;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Clock running {@code speedup} times faster than the real one, so a voting day is replayed in minutes. The
+ * application under load and the load generator share it: the generator restarts it at the beginning of the day once
+ * the application is up.
+ */
+public class SimulatedClock extends Clock {
+    private final AtomicReference<Base> base;
+    private final double speedup;
+    private final ZoneId zone;
+
+    public SimulatedClock(Instant start, double speedup, ZoneId zone) {
+        this(new AtomicReference<>(new Base(start, System.nanoTime())), speedup, zone);
+    }
+
+    private SimulatedClock(AtomicReference<Base> base, double speedup, ZoneId zone) {
+        this.base = base;
+        this.speedup = speedup;
+        this.zone = zone;
+    }
+
+    public void restart(Instant start) {
+        base.set(new Base(start, System.nanoTime()));
+    }
+
+    /**
+     * Real time left until the simulated instant, negative when it has passed.
+     */
+    public Duration realDelayUntil(Instant instant) {
+        Base current = base.get();
+        long realNanos = (long) (Duration.between(current.start(), instant).toNanos() / speedup);
+        return Duration.ofNanos(current.realNanos() + realNanos - System.nanoTime());
+    }
+
+    @Override
+    public Instant instant() {
+        Base current = base.get();
+        return current.start().plusNanos((long) ((System.nanoTime() - current.realNanos()) * speedup));
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new SimulatedClock(base, speedup, zone);
+    }
+
+    private record Base(Instant start, long realNanos) {
+    }
+}
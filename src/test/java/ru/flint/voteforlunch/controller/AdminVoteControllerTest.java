@@ -0,0 +1,199 @@
+package ru.flint.voteforlunch.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flint.voteforlunch.AbstractSpringBootTest;
+import ru.flint.voteforlunch.model.VoteImportResult;
+import ru.flint.voteforlunch.service.ArchiveService;
+import ru.flint.voteforlunch.service.VoteResultService;
+import ru.flint.voteforlunch.web.json.JsonUtil;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.flint.voteforlunch.testdata.UserTestData.ADMIN_MAIL;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER_MAIL;
+import static ru.flint.voteforlunch.web.controller.AdminVoteController.REST_URL;
+
+/**
+ * The import commits batch by batch, so it runs without the test transaction and removes the imported votes
+ * and their results.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AdminVoteControllerTest extends AbstractSpringBootTest {
+    private static final String IMPORT_URL = REST_URL + "/import";
+    private static final String EXPORT_URL = REST_URL + "/export";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private VoteResultService voteResults;
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM vote WHERE vote_date = ?", importDate());
+        voteResults.refresh(List.of(importDate()));
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void importVotes() throws Exception {
+        LocalDate date = importDate();
+        String ndjson = String.join("\n",
+                row(1, 1, date, "09:00"),
+                row(1, 2, date, "10:00"),
+                row(1, 1, date, "09:30"),
+                row(2, 1, date, "12:00"),
+                row(2, 2, date, "12:30"),
+                "{not json",
+                row(2, 99, date, "09:00"),
+                row(99999, 1, date, "09:00"),
+                "",
+                row(2, 1, LocalDate.now(clock).plusDays(1), "09:00"));
+
+        VoteImportResult result = importVotes(ndjson);
+
+        assertThat(result.rows()).isEqualTo(9);
+        assertThat(result.imported()).isEqualTo(3);
+        assertThat(result.rejected()).isEqualTo(6);
+        assertThat(result.errors()).extracting(VoteImportResult.RowError::line).containsExactly(3L, 5L, 6L, 7L, 8L, 10L);
+        assertThat(result.errors()).extracting(VoteImportResult.RowError::message).contains(
+                "Restaurant with id = 99 not found",
+                "User with id = 99999 not found");
+        assertThat(restaurantOf(1)).isEqualTo(2);
+        assertThat(restaurantOf(2)).isEqualTo(1);
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void importSeveralBatches() throws Exception {
+        LocalDate date = importDate();
+        String ndjson = LongStream.rangeClosed(3, 2002)
+                .mapToObj(userId -> row(userId, 1, date, "09:00") + "\n" + row(userId, 2, date, "09:05"))
+                .collect(Collectors.joining("\n"));
+
+        VoteImportResult result = importVotes(ndjson);
+
+        assertThat(result.imported()).isEqualTo(4000);
+        assertThat(result.errors()).isEmpty();
+        assertThat(jdbcTemplate.queryForList("SELECT DISTINCT restaurant_id FROM vote WHERE vote_date = ?", Long.class, date))
+                .isEqualTo(List.of(2L));
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void rejectArchivedDate() throws Exception {
+        LocalDate date = archiveService.getHorizon().minusDays(1);
+
+        VoteImportResult result = importVotes(row(1, 1, date, "09:00"));
+
+        assertThat(result.imported()).isZero();
+        assertThat(result.errors()).extracting(VoteImportResult.RowError::message)
+                .containsExactly(String.format("Vote on %s is before the archive horizon %s", date, archiveService.getHorizon()));
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void importForbidden() throws Exception {
+        mockMvc.perform(post(IMPORT_URL).contentType(MediaType.APPLICATION_NDJSON).content(row(2, 1, importDate(), "09:00")))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void exportNdjson() throws Exception {
+        LocalDate today = LocalDate.now(clock);
+        String ndjson = export("ndjson", today.minusDays(2), today.minusDays(1))
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(ndjson.lines()).containsExactly(
+                "{\"userId\":1,\"restaurantId\":2,\"date\":\"2022-11-13\",\"time\":\"09:30:00\"}",
+                "{\"userId\":2,\"restaurantId\":2,\"date\":\"2022-11-13\",\"time\":\"10:30:00\"}",
+                "{\"userId\":1,\"restaurantId\":1,\"date\":\"2022-11-14\",\"time\":\"09:30:00\"}",
+                "{\"userId\":2,\"restaurantId\":2,\"date\":\"2022-11-14\",\"time\":\"10:30:00\"}");
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void exportCsv() throws Exception {
+        LocalDate date = LocalDate.now(clock).minusDays(1);
+        String csv = export("csv", date, date)
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"votes-2022-11-14-2022-11-14.csv\""))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(csv.lines()).containsExactly(
+                "userId,restaurantId,date,time",
+                "1,1,2022-11-14,09:30:00",
+                "2,2,2022-11-14,10:30:00");
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void exportUnsupportedFormat() throws Exception {
+        LocalDate date = LocalDate.now(clock);
+        mockMvc.perform(get(EXPORT_URL).param("from", date.toString()).param("to", date.toString()).param("format", "xml"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void exportForbidden() throws Exception {
+        LocalDate date = LocalDate.now(clock);
+        mockMvc.perform(get(EXPORT_URL).param("from", date.toString()).param("to", date.toString()))
+                .andExpect(status().isForbidden());
+    }
+
+    private ResultActions export(String format, LocalDate from, LocalDate to) throws Exception {
+        MvcResult result = mockMvc.perform(get(EXPORT_URL)
+                        .param("from", from.toString()).param("to", to.toString()).param("format", format))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+    }
+
+    private VoteImportResult importVotes(String ndjson) throws Exception {
+        String json = mockMvc.perform(post(IMPORT_URL).contentType(MediaType.APPLICATION_NDJSON).content(ndjson))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonUtil.readValue(json, VoteImportResult.class);
+    }
+
+    private Long restaurantOf(long userId) {
+        return jdbcTemplate.queryForObject("SELECT restaurant_id FROM vote WHERE user_id = ? AND vote_date = ?",
+                Long.class, userId, importDate());
+    }
+
+    private LocalDate importDate() {
+        return LocalDate.now(clock).minusDays(10);
+    }
+
+    private static String row(long userId, long restaurantId, LocalDate date, String time) {
+        return String.format("{\"userId\":%d,\"restaurantId\":%d,\"date\":\"%s\",\"time\":\"%s\"}", userId, restaurantId, date, time);
+    }
+}
@@ -0,0 +1,124 @@
+package ru.flint.voteforlunch.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import ru.flint.voteforlunch.AbstractSpringBootTest;
+import ru.flint.voteforlunch.model.User;
+import ru.flint.voteforlunch.web.controller.UserController;
+import ru.flint.voteforlunch.web.json.JsonUtil;
+import ru.flint.voteforlunch.web.security.AccessToken;
+import ru.flint.voteforlunch.web.security.AccessTokens;
+import ru.flint.voteforlunch.web.security.AuthorizedUser;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.flint.voteforlunch.testdata.UserTestData.ADMIN;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER_DTO;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER_DTO_MATCHER;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER_DTO_LIST;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER_MAIL;
+import static ru.flint.voteforlunch.utils.MockAuthorization.userHttpBasic;
+import static ru.flint.voteforlunch.web.controller.AuthController.REST_URL;
+
+class AuthControllerTest extends AbstractSpringBootTest {
+    private static final String TOKEN_URL = REST_URL + "/token";
+    private static final String PROFILE_URL = UserController.REST_URL + "/profile";
+
+    @Value("${auth-token.secret}")
+    private String secret;
+
+    @Test
+    void issueToken() throws Exception {
+        AccessToken token = issue(USER);
+
+        assertThat(token.tokenType()).isEqualTo("Bearer");
+        assertThat(token.expiresIn()).isEqualTo(Duration.ofMinutes(15).toSeconds());
+        assertThat(token.accessToken().split("\\.")).hasSize(3);
+    }
+
+    @Test
+    void issueUnauthorized() throws Exception {
+        mockMvc.perform(post(TOKEN_URL))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post(TOKEN_URL).with(httpBasic(USER_MAIL, "wrong")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void authenticateWithToken() throws Exception {
+        mockMvc.perform(get(PROFILE_URL).header(HttpHeaders.AUTHORIZATION, bearer(issue(USER).accessToken())))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(USER_DTO_MATCHER.contentJson(USER_DTO));
+    }
+
+    @Test
+    void tokenCarriesRoles() throws Exception {
+        mockMvc.perform(get(UserController.REST_URL).header(HttpHeaders.AUTHORIZATION, bearer(issue(USER).accessToken())))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get(UserController.REST_URL).header(HttpHeaders.AUTHORIZATION, bearer(issue(ADMIN).accessToken())))
+                .andExpect(status().isOk())
+                .andExpect(USER_DTO_MATCHER.contentJson(USER_DTO_LIST));
+    }
+
+    @Test
+    void renewWithTokenRejected() throws Exception {
+        String token = issue(USER).accessToken();
+        mockMvc.perform(post(TOKEN_URL).header(HttpHeaders.AUTHORIZATION, bearer(token)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void tamperedToken() throws Exception {
+        String token = issue(USER).accessToken();
+        String[] parts = token.split("\\.");
+        String admin = new String(Base64.getUrlDecoder().decode(parts[1])).replace("\"USER\"", "\"ADMIN\"");
+        String forged = parts[0] + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(admin.getBytes()) + "." + parts[2];
+
+        expectInvalid(forged);
+        expectInvalid(token.substring(0, token.length() - 2) + "AA");
+        expectInvalid("eyJhbGciOiJub25lIn0." + parts[1] + ".");
+        expectInvalid("not-a-token");
+    }
+
+    @Test
+    void expiredToken() throws Exception {
+        AccessTokens earlier = new AccessTokens(Clock.offset(clock, Duration.ofMinutes(-16)), secret, Duration.ofMinutes(15));
+        AccessTokens recent = new AccessTokens(Clock.offset(clock, Duration.ofMinutes(-14)), secret, Duration.ofMinutes(15));
+        AuthorizedUser user = new AuthorizedUser(USER_DTO.getId(), USER.getEmail(), USER.getRoles());
+
+        expectInvalid(earlier.issue(user).accessToken());
+        mockMvc.perform(get(PROFILE_URL).header(HttpHeaders.AUTHORIZATION, bearer(recent.issue(user).accessToken())))
+                .andExpect(status().isOk());
+    }
+
+    private void expectInvalid(String token) throws Exception {
+        mockMvc.perform(get(PROFILE_URL).header(HttpHeaders.AUTHORIZATION, bearer(token)))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().string(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\""));
+    }
+
+    private AccessToken issue(User user) throws Exception {
+        String json = mockMvc.perform(post(TOKEN_URL).with(userHttpBasic(user)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+        return JsonUtil.readValue(json, AccessToken.class);
+    }
+
+    private static String bearer(String token) {
+        return "Bearer " + token;
+    }
+}
@@ -0,0 +1,149 @@
+package ru.flint.voteforlunch.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flint.voteforlunch.AbstractSpringBootTest;
+import ru.flint.voteforlunch.model.Dish;
+import ru.flint.voteforlunch.model.Menu;
+import ru.flint.voteforlunch.service.DishService;
+import ru.flint.voteforlunch.service.MenuPublishService;
+import ru.flint.voteforlunch.service.MenuService;
+import ru.flint.voteforlunch.service.VoteService;
+import ru.flint.voteforlunch.web.controller.MenuController;
+import ru.flint.voteforlunch.web.controller.VoteController;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER_MAIL;
+
+// cached, so a stale response body under a new tag would show
+@TestPropertySource(properties = "spring.cache.type=caffeine")
+class ConditionalGetTest extends AbstractSpringBootTest {
+    private static final long VOTER_ID = 2;
+
+    @Autowired
+    private DishService dishService;
+
+    @Autowired
+    private VoteService voteService;
+
+    @Autowired
+    private MenuService menuService;
+
+    @Autowired
+    private MenuPublishService publishService;
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void menusNotModified() throws Exception {
+        String eTag = eTag(menus());
+
+        mockMvc.perform(menus().header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+        mockMvc.perform(menus().header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void menuNotModified() throws Exception {
+        MockHttpServletRequestBuilder menu = get(MenuController.REST_URL + "/3");
+        String eTag = eTag(menu);
+
+        mockMvc.perform(get(MenuController.REST_URL + "/3").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void gzipHasOwnTag() throws Exception {
+        assertThat(eTag(menus().header(HttpHeaders.ACCEPT_ENCODING, "gzip"))).isNotEqualTo(eTag(menus()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @WithUserDetails(value = USER_MAIL)
+    void dishChangeChangesMenusTag() throws Exception {
+        String eTag = eTag(menus());
+        Dish dish = dishService.create(new Dish("Pumpkin soup"));
+        try {
+            mockMvc.perform(menus().header(HttpHeaders.IF_NONE_MATCH, eTag))
+                    .andExpect(status().isOk());
+        } finally {
+            dishService.delete(dish.getId());
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @WithUserDetails(value = USER_MAIL)
+    void voteChangesDistributionTag() throws Exception {
+        LocalDate today = LocalDate.now(clock);
+        String todayTag = eTag(distribution(today));
+        String yesterdayTag = eTag(distribution(today.minusDays(1)));
+
+        voteService.saveAndReturnWithDetails(1, VOTER_ID);
+        try {
+            mockMvc.perform(distribution(today).header(HttpHeaders.IF_NONE_MATCH, todayTag))
+                    .andExpect(status().isOk());
+            mockMvc.perform(distribution(today.minusDays(1)).header(HttpHeaders.IF_NONE_MATCH, yesterdayTag))
+                    .andExpect(status().isNotModified());
+        } finally {
+            voteService.delete(VOTER_ID);
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @WithUserDetails(value = USER_MAIL)
+    void menuDeleteChangesMenusTag() throws Exception {
+        LocalDate date = LocalDate.now(clock).plusDays(7);
+        publishService.copy(LocalDate.now(clock).minusDays(2), date, null);
+        List<Menu> menus = menuService.getAllWithRestaurants(date);
+        try {
+            String eTag = eTag(menus(date));
+            menuService.delete(menus.get(0).getId());
+
+            mockMvc.perform(menus(date).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(menus.size() - 1));
+        } finally {
+            menus.stream().skip(1).forEach(menu -> menuService.delete(menu.getId()));
+        }
+    }
+
+    private String eTag(MockHttpServletRequestBuilder request) throws Exception {
+        String eTag = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).startsWith("\"");
+        return eTag;
+    }
+
+    private MockHttpServletRequestBuilder menus() {
+        return menus(LocalDate.now(clock).minusDays(2));
+    }
+
+    private static MockHttpServletRequestBuilder menus(LocalDate date) {
+        return get(MenuController.REST_URL + "/on-date").param("date", date.toString());
+    }
+
+    private static MockHttpServletRequestBuilder distribution(LocalDate date) {
+        return get(VoteController.REST_URL + "/distribution").param("date", date.toString());
+    }
+}
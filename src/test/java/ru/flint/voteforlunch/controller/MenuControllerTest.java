@@ -19,6 +19,7 @@ import java.time.LocalDate;
 import java.util.*;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.hamcrest.Matchers.hasItem;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -35,7 +36,7 @@ public class MenuControllerTest extends AbstractSpringBootTest {
             "menuItems", "must not be empty")));
 
     private static final LinkedHashMapMatcher DISH_PRICE_CONSTRAINTS_MATCHER = new LinkedHashMapMatcher(new LinkedHashMap<>(Map.of(
-            "price", "Price must be positive")));
+            "menuItems[].price", "Price must be positive")));
 
     public static MatcherFactory.Matcher<MenuListDTO> MENU_LIST_DTO_MATCHER = MatcherFactory.usingEqualsComparator(MenuListDTO.class);
     public static MatcherFactory.Matcher<MenuResponseDTO> MENU_RESPONSE_DTO_MATCHER = MatcherFactory.usingEqualsComparator(MenuResponseDTO.class);
@@ -98,6 +99,87 @@ public class MenuControllerTest extends AbstractSpringBootTest {
         assertThat(menuResponseDto).isEqualTo(mapper.toDTO(menuService.getByIdWithAllData(menuResponseDto.getId())));
     }
 
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void createMenus() throws Exception {
+        LocalDate tomorrow = TODAY.plusDays(1);
+        MenuBatchRequestDTO batchDTO = new MenuBatchRequestDTO(List.of(
+                new MenuRequestDTO(tomorrow, CHERRY_RESTAURANT.getId(),
+                        Set.of(new MenuItemRequestDTO(TEA.getId(), 20), new MenuItemRequestDTO(BURGER.getId(), 30))),
+                new MenuRequestDTO(tomorrow, AISHA_RESTAURANT.getId(),
+                        Set.of(new MenuItemRequestDTO(SOUP.getId(), 15)))));
+
+        String json = mockMvc.perform(post(REST_URL + "/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(JsonUtil.writeValue(batchDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+        List<MenuListDTO> created = JsonUtil.readValues(json, MenuListDTO.class);
+
+        assertThat(created.size()).isEqualTo(2);
+        MenuResponseDTO cherryMenu = mapper.toDTO(menuService.getByIdWithAllData(created.get(0).getId()));
+        assertThat(cherryMenu.getMenuDate()).isEqualTo(tomorrow);
+        assertThat(cherryMenu.getRestaurantDTO()).isEqualTo(CHERRY_RESTAURANT);
+        assertThat(cherryMenu.getMenuItems())
+                .usingRecursiveComparison()
+                .ignoringFields("id")
+                .isEqualTo(Set.of(
+                        new MenuItemResponseDTO(null, TEA, 20),
+                        new MenuItemResponseDTO(null, BURGER, 30)
+                ));
+        assertThat(menuService.getAllWithRestaurants(tomorrow).size()).isEqualTo(2);
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void copyMenus() throws Exception {
+        LocalDate tomorrow = TODAY.plusDays(1);
+        String json = mockMvc.perform(post(REST_URL + "/copy")
+                        .param("from", MINUS_ONE_DAY.toString())
+                        .param("to", tomorrow.toString()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+        List<MenuListDTO> copied = JsonUtil.readValues(json, MenuListDTO.class);
+
+        assertThat(copied.size()).isEqualTo(2);
+        MenuResponseDTO cherryMenu = mapper.toDTO(menuService.getByIdWithAllData(copied.get(1).getId()));
+        assertThat(cherryMenu.getMenuDate()).isEqualTo(tomorrow);
+        assertThat(cherryMenu.getRestaurantDTO()).isEqualTo(CHERRY_RESTAURANT);
+        assertThat(cherryMenu.getMenuItems())
+                .usingRecursiveComparison()
+                .ignoringFields("id")
+                .isEqualTo(Set.of(
+                        new MenuItemResponseDTO(null, SOUP, 25),
+                        new MenuItemResponseDTO(null, BURGER, 15)
+                ));
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void copyMenusOfRestaurants() throws Exception {
+        mockMvc.perform(post(REST_URL + "/copy")
+                        .param("from", MINUS_ONE_DAY.toString())
+                        .param("to", TODAY.toString())
+                        .param("restaurantIds", String.valueOf(AISHA_RESTAURANT.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].restaurantId").value(AISHA_RESTAURANT.getId()));
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void copyMenusSkipsExisting() throws Exception {
+        mockMvc.perform(post(REST_URL + "/copy")
+                        .param("from", MINUS_TWO_DAYS.toString())
+                        .param("to", MINUS_ONE_DAY.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+
+        assertThat(menuService.getByIdWithAllData(2L).getMenuItemSet().size()).isEqualTo(2);
+    }
+
     @Test
     @WithUserDetails(value = ADMIN_MAIL)
     void updateMenu() throws Exception {
@@ -228,6 +310,65 @@ public class MenuControllerTest extends AbstractSpringBootTest {
                     .andExpect(jsonPath("$.detail").value("Unable to find ru.flint.voteforlunch.model.Dish with id 100"));
         }
 
+        @Test
+        @WithUserDetails(value = ADMIN_MAIL)
+        void createMenusWithDuplicate() throws Exception {
+            mockMvc.perform(post(REST_URL + "/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(JsonUtil.writeValue(new MenuBatchRequestDTO(List.of(
+                                    new MenuRequestDTO(TODAY, CHERRY_RESTAURANT.getId(), Set.of(new MenuItemRequestDTO(TEA.getId(), 10))),
+                                    new MenuRequestDTO(TODAY, CHERRY_RESTAURANT.getId(), Set.of(new MenuItemRequestDTO(SOUP.getId(), 10))))))))
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON))
+                    .andExpect(status().isConflict())
+                    .andExpect(jsonPath("$.detail").value("Menu for this restaurant on this date already exists"));
+        }
+
+        @Test
+        @WithUserDetails(value = ADMIN_MAIL)
+        void createMenusWithUnknownDish() throws Exception {
+            mockMvc.perform(post(REST_URL + "/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(JsonUtil.writeValue(new MenuBatchRequestDTO(List.of(
+                                    new MenuRequestDTO(TODAY, CHERRY_RESTAURANT.getId(), Set.of(new MenuItemRequestDTO(100, 10))))))))
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON))
+                    .andExpect(status().isUnprocessableEntity())
+                    .andExpect(jsonPath("$.detail").value("Dish with id = 100 not found"));
+        }
+
+        @Test
+        @WithUserDetails(value = ADMIN_MAIL)
+        void createUnprocessableMenus() throws Exception {
+            mockMvc.perform(post(REST_URL + "/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(JsonUtil.writeValue(new MenuBatchRequestDTO(List.of(
+                                    new MenuRequestDTO(TODAY, CHERRY_RESTAURANT.getId(), Set.of(new MenuItemRequestDTO(TEA.getId(), 0))))))))
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON))
+                    .andExpect(status().isUnprocessableEntity())
+                    .andExpect(jsonPath("$.invalid_params.*").value(hasItem("Price must be positive")));
+        }
+
+        @Test
+        @WithUserDetails(value = ADMIN_MAIL)
+        void createMenusOnArchivedDate() throws Exception {
+            mockMvc.perform(post(REST_URL + "/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(JsonUtil.writeValue(new MenuBatchRequestDTO(List.of(
+                                    new MenuRequestDTO(TODAY.minusYears(5), CHERRY_RESTAURANT.getId(), Set.of(new MenuItemRequestDTO(TEA.getId(), 10))))))))
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_PROBLEM_JSON))
+                    .andExpect(status().isUnprocessableEntity())
+                    .andExpect(jsonPath("$.detail").value(String.format("Menus on %s are archived and can not be changed", TODAY.minusYears(5))));
+        }
+
+        @Test
+        @WithUserDetails(value = ADMIN_MAIL)
+        void copyMenusToSameDate() throws Exception {
+            mockMvc.perform(post(REST_URL + "/copy")
+                            .param("from", TODAY.toString())
+                            .param("to", TODAY.toString()))
+                    .andExpect(status().isUnprocessableEntity())
+                    .andExpect(jsonPath("$.detail").value("Menus can not be copied to the same date"));
+        }
+
         @Test
         @WithUserDetails(value = ADMIN_MAIL)
         void wrongMenuItem() throws Exception {
@@ -0,0 +1,57 @@
+package ru.flint.voteforlunch.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.TestPropertySource;
+import ru.flint.voteforlunch.AbstractSpringBootTest;
+import ru.flint.voteforlunch.web.controller.MenuController;
+import ru.flint.voteforlunch.web.controller.VoteController;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.flint.voteforlunch.testdata.UserTestData.ADMIN_MAIL;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER_MAIL;
+
+@AutoConfigureObservability
+@TestPropertySource(properties = "spring.cache.type=caffeine")
+class PrometheusEndpointTest extends AbstractSpringBootTest {
+    private static final String PROMETHEUS_URL = "/actuator/prometheus";
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void scrape() throws Exception {
+        mockMvc.perform(post(VoteController.REST_URL).param("restaurantId", "1"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get(MenuController.REST_URL + "/on-date").param("date", LocalDate.now(clock).minusDays(1).toString()))
+                .andExpect(status().isOk());
+
+        String metrics = mockMvc.perform(get(PROMETHEUS_URL))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(metrics).contains(
+                "service_method_seconds_count{class=\"ru.flint.voteforlunch.service.VoteService\",exception=\"none\",method=\"saveAndReturnWithDetails\",}",
+                "service_method_seconds_count{class=\"ru.flint.voteforlunch.service.MenuService\",exception=\"none\",method=\"getAllWithRestaurants\",}",
+                "vote_cutoff_rejections_total",
+                "vote_conflicts_total",
+                "cache_gets_total{cache=\"menus\",cache_manager=\"cacheManager\",name=\"menus\",result=\"miss\",}",
+                "cache_evictions_total{cache=\"voteDistribution\"",
+                "jdbc_connections_active");
+        assertThat(metrics.lines().filter(line -> line.startsWith("http_server_requests_seconds_bucket")))
+                .anyMatch(line -> line.contains("uri=\"" + VoteController.REST_URL + "\""))
+                .noneMatch(line -> line.contains("uri=\"" + MenuController.REST_URL));
+        assertThat(metrics).contains("uri=\"" + VoteController.REST_URL + "\",quantile=\"0.99\"");
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void scrapeForbidden() throws Exception {
+        mockMvc.perform(get(PROMETHEUS_URL))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,160 @@
+package ru.flint.voteforlunch.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.TestPropertySource;
+import ru.flint.voteforlunch.AbstractSpringBootTest;
+import ru.flint.voteforlunch.model.Dish;
+import ru.flint.voteforlunch.service.DishService;
+import ru.flint.voteforlunch.service.MenuService;
+import ru.flint.voteforlunch.service.VoteResultService;
+import ru.flint.voteforlunch.web.SerializedResponses;
+import ru.flint.voteforlunch.web.controller.MenuController;
+import ru.flint.voteforlunch.web.controller.VoteController;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER_MAIL;
+
+@TestPropertySource(properties = {"spring.cache.type=caffeine", "response-cache.gzip-min-size=100"})
+class SerializedResponsesTest extends AbstractSpringBootTest {
+    private static final long MENU_ID = 3;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MenuService menuService;
+
+    @Autowired
+    private DishService dishService;
+
+    @Autowired
+    private VoteResultService voteResultService;
+
+    @AfterEach
+    void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void menusOnDateAreCached() throws Exception {
+        LocalDate date = LocalDate.now(clock).minusDays(2);
+        String first = getMenus(date).getContentAsString();
+
+        assertThat(cacheManager.getCache(SerializedResponses.MENUS).get(date)).isNotNull();
+        assertThat(getMenus(date).getContentAsString()).isEqualTo(first);
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void menuDeleteEvicts() throws Exception {
+        LocalDate date = menuService.getByIdWithAllData(MENU_ID).getMenuDate();
+        getMenus(date);
+        mockMvc.perform(get(MenuController.REST_URL + "/" + MENU_ID))
+                .andExpect(status().isOk());
+        assertThat(cacheManager.getCache(SerializedResponses.MENU).get(MENU_ID)).isNotNull();
+
+        menuService.delete(MENU_ID);
+
+        assertThat(cacheManager.getCache(SerializedResponses.MENU).get(MENU_ID)).isNull();
+        assertThat(cacheManager.getCache(SerializedResponses.MENUS).get(date)).isNull();
+        mockMvc.perform(get(MenuController.REST_URL + "/" + MENU_ID))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void dishChangeEvicts() throws Exception {
+        LocalDate date = LocalDate.now(clock).minusDays(2);
+        getMenus(date);
+
+        dishService.create(new Dish("Pumpkin soup"));
+
+        assertThat(cacheManager.getCache(SerializedResponses.MENUS).get(date)).isNull();
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void onlyClosedDistributionIsCached() throws Exception {
+        LocalDate today = LocalDate.now(clock);
+        LocalDate yesterday = today.minusDays(1);
+        LocalDate tomorrow = today.plusDays(1);
+        for (LocalDate date : new LocalDate[]{today, yesterday, tomorrow}) {
+            mockMvc.perform(get(VoteController.REST_URL + "/distribution").param("date", date.toString()))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        }
+
+        assertThat(cacheManager.getCache(SerializedResponses.VOTE_DISTRIBUTION).get(today)).isNull();
+        assertThat(cacheManager.getCache(SerializedResponses.VOTE_DISTRIBUTION).get(yesterday)).isNotNull();
+        assertThat(cacheManager.getCache(SerializedResponses.VOTE_DISTRIBUTION).get(tomorrow)).isNull();
+        assertThat(cacheManager.getCache("voteDistribution").get(today)).isNull();
+        assertThat(cacheManager.getCache("voteDistribution").get(yesterday)).isNotNull();
+        assertThat(cacheManager.getCache("voteDistribution").get(tomorrow)).isNull();
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void refreshEvictsDistribution() throws Exception {
+        LocalDate yesterday = LocalDate.now(clock).minusDays(1);
+        mockMvc.perform(get(VoteController.REST_URL + "/distribution").param("date", yesterday.toString()))
+                .andExpect(status().isOk());
+
+        voteResultService.refresh(List.of(yesterday));
+
+        assertThat(cacheManager.getCache(SerializedResponses.VOTE_DISTRIBUTION).get(yesterday)).isNull();
+        assertThat(cacheManager.getCache("voteDistribution").get(yesterday)).isNull();
+    }
+
+    @Test
+    @WithUserDetails(value = USER_MAIL)
+    void gzipWhenAccepted() throws Exception {
+        LocalDate date = LocalDate.now(clock).minusDays(2);
+        String json = getMenus(date).getContentAsString();
+
+        MockHttpServletResponse gzipped = mockMvc.perform(get(MenuController.REST_URL + "/on-date")
+                        .param("date", date.toString())
+                        .header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andReturn().getResponse();
+
+        assertThat(decompress(gzipped.getContentAsByteArray())).isEqualTo(json);
+        mockMvc.perform(get(MenuController.REST_URL + "/on-date")
+                        .param("date", date.toString())
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    private MockHttpServletResponse getMenus(LocalDate date) throws Exception {
+        return mockMvc.perform(get(MenuController.REST_URL + "/on-date").param("date", date.toString()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andReturn().getResponse();
+    }
+
+    private static String decompress(byte[] gzip) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return new String(in.readAllBytes());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ru.flint.voteforlunch.controller;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,6 +16,7 @@ import ru.flint.voteforlunch.service.UserService;
 import ru.flint.voteforlunch.utils.LinkedHashMapMatcher;
 import ru.flint.voteforlunch.web.dto.UserDTO;
 import ru.flint.voteforlunch.web.mapper.UserMapper;
+import ru.flint.voteforlunch.web.security.AuthorizedUser;
 import ru.flint.voteforlunch.web.json.JsonUtil;
 
 import java.util.LinkedHashMap;
@@ -26,6 +28,9 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static ru.flint.voteforlunch.testdata.UserTestData.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.security.test.web.servlet.response.SecurityMockMvcResultMatchers.authenticated;
+import static ru.flint.voteforlunch.utils.MockAuthorization.userHttpBasic;
 import static ru.flint.voteforlunch.web.controller.UserController.REST_URL;
 
 class UserControllerTest extends AbstractSpringBootTest {
@@ -45,6 +50,9 @@ class UserControllerTest extends AbstractSpringBootTest {
     @Autowired
     private UserMapper mapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     @WithUserDetails(value = ADMIN_MAIL)
     void getAllUsers() throws Exception {
@@ -131,6 +139,71 @@ class UserControllerTest extends AbstractSpringBootTest {
         }
     }
 
+    @Nested
+    class CachedAuthentication {
+        @Test
+        void repeatedCredentialsSkipAuthentication() throws Exception {
+            double hits = authenticationCacheHits();
+            mockMvc.perform(get(REST_URL + "/profile").with(userHttpBasic(USER)))
+                    .andExpect(status().isOk());
+            mockMvc.perform(get(REST_URL + "/profile").with(userHttpBasic(USER)))
+                    .andExpect(status().isOk())
+                    .andExpect(USER_DTO_MATCHER.contentJson(USER_DTO));
+
+            assertThat(authenticationCacheHits()).isGreaterThanOrEqualTo(hits + 1);
+        }
+
+        @Test
+        void updateEvictsAuthentication() throws Exception {
+            mockMvc.perform(get(REST_URL + "/profile").with(userHttpBasic(USER)))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(put(REST_URL + "/" + USER_DTO.getId()).with(userHttpBasic(ADMIN))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(JsonUtil.writeValue(getUpdatedDto("changed@ya.ru"))))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(get(REST_URL + "/profile").with(userHttpBasic(USER)))
+                    .andExpect(status().isUnauthorized());
+        }
+
+        @Test
+        void deleteEvictsAuthentication() throws Exception {
+            mockMvc.perform(get(REST_URL + "/profile").with(userHttpBasic(USER)))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(delete(REST_URL + "/" + USER_DTO.getId()).with(userHttpBasic(ADMIN)))
+                    .andExpect(status().isNoContent());
+
+            mockMvc.perform(get(REST_URL + "/profile").with(userHttpBasic(USER)))
+                    .andExpect(status().isUnauthorized());
+        }
+
+        @Test
+        void authenticatedPrincipalHasNoPassword() throws Exception {
+            for (int i = 0; i < 2; i++) {
+                mockMvc.perform(get(REST_URL + "/profile").with(userHttpBasic(USER)))
+                        .andExpect(status().isOk())
+                        .andExpect(authenticated().withAuthentication(authentication -> {
+                            assertThat(authentication.getCredentials()).isNull();
+                            assertThat(((AuthorizedUser) authentication.getPrincipal()).getPassword()).isNull();
+                        }));
+            }
+        }
+
+        @Test
+        void wrongPasswordIsNotCached() throws Exception {
+            mockMvc.perform(get(REST_URL + "/profile").with(httpBasic(USER_MAIL, "wrong")))
+                    .andExpect(status().isUnauthorized());
+            mockMvc.perform(get(REST_URL + "/profile").with(httpBasic(USER_MAIL, "wrong")))
+                    .andExpect(status().isUnauthorized());
+        }
+
+        private double authenticationCacheHits() {
+            return meterRegistry.get("cache.gets").tags("cache", "authentications", "result", "hit").functionCounter().count();
+        }
+    }
+
     @Nested
     class ErrorCasesWithUser {
         @Test
@@ -0,0 +1,90 @@
+package ru.flint.voteforlunch.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flint.voteforlunch.AbstractSpringBootTest;
+import ru.flint.voteforlunch.service.VoteTally;
+import ru.flint.voteforlunch.web.controller.VoteController;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER;
+import static ru.flint.voteforlunch.utils.MockAuthorization.userHttpBasic;
+
+/**
+ * Parallel votes of one user must neither conflict nor leave more than one vote. Runs without the test transaction,
+ * so every vote is committed as in production, and removes the written vote afterwards.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VoteConcurrencyTest extends AbstractSpringBootTest {
+    private static final long USER_ID = 2;
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 10;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private VoteTally tally;
+
+    @AfterEach
+    void cleanUp() {
+        deleteTodayVote();
+        tally.invalidate();
+    }
+
+    @Test
+    void parallelVotesOfSameUser() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                // every round starts without a vote, so all requests race for the first insert
+                deleteTodayVote();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Integer>> statuses = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    String restaurantId = String.valueOf(i % 2 + 1);
+                    statuses.add(executor.submit(() -> {
+                        start.await();
+                        return mockMvc.perform(put(VoteController.REST_URL)
+                                        .param("restaurantId", restaurantId)
+                                        .with(userHttpBasic(USER)))
+                                .andReturn().getResponse().getStatus();
+                    }));
+                }
+                start.countDown();
+                for (Future<Integer> status : statuses) {
+                    assertThat(status.get()).isEqualTo(200);
+                }
+
+                List<Map<String, Object>> votes = jdbcTemplate.queryForList(
+                        "SELECT restaurant_id FROM vote WHERE user_id = ? AND vote_date = ?", USER_ID, today());
+                assertThat(votes).hasSize(1);
+                assertThat(((Number) votes.get(0).get("RESTAURANT_ID")).longValue()).isIn(1L, 2L);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void deleteTodayVote() {
+        jdbcTemplate.update("DELETE FROM vote WHERE user_id = ? AND vote_date = ?", USER_ID, today());
+    }
+
+    private LocalDate today() {
+        return LocalDate.now(clock);
+    }
+}
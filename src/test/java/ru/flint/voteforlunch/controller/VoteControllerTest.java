@@ -1,13 +1,16 @@
 package ru.flint.voteforlunch.controller;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.web.servlet.ResultActions;
 import ru.flint.voteforlunch.AbstractSpringBootTest;
 import ru.flint.voteforlunch.model.VoteDistribution;
 import ru.flint.voteforlunch.utils.MatcherFactory;
+import ru.flint.voteforlunch.web.IdempotentResponses;
 import ru.flint.voteforlunch.web.dto.VoteDTO;
 
 import java.time.LocalDate;
@@ -21,9 +24,13 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static ru.flint.voteforlunch.testdata.RestaurantTestData.AISHA_RESTAURANT;
 import static ru.flint.voteforlunch.testdata.RestaurantTestData.CHERRY_RESTAURANT;
 import static ru.flint.voteforlunch.testdata.UserTestData.ADMIN_MAIL;
+import static ru.flint.voteforlunch.web.controller.VoteController.NEXT_CURSOR_HEADER;
 import static ru.flint.voteforlunch.web.controller.VoteController.REST_URL;
 
 public class VoteControllerTest extends AbstractSpringBootTest {
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     public static MatcherFactory.Matcher<VoteDTO> VOTE_DTO_MATCHER = MatcherFactory.usingEqualsComparator(VoteDTO.class);
     public static MatcherFactory.Matcher<VoteDistribution> VOTE_DISTRIBUTION_MATCHER = MatcherFactory.usingEqualsComparator(VoteDistribution.class);
 
@@ -46,6 +53,35 @@ public class VoteControllerTest extends AbstractSpringBootTest {
                 .andExpect(VOTE_DTO_MATCHER.contentJson(VOTES));
     }
 
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void getVotesPageByPage() throws Exception {
+        mockMvc.perform(get(REST_URL).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(NEXT_CURSOR_HEADER, "2022-11-14"))
+                .andExpect(VOTE_DTO_MATCHER.contentJson(List.of(VOTE_CHERRY_3L)));
+        mockMvc.perform(get(REST_URL).param("limit", "1").param("cursor", "2022-11-14"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(NEXT_CURSOR_HEADER))
+                .andExpect(VOTE_DTO_MATCHER.contentJson(List.of(VOTE_AISHA_1L)));
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void getVotesPageWithDefaultLimit() throws Exception {
+        mockMvc.perform(get(REST_URL).param("cursor", "2022-11-14"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(NEXT_CURSOR_HEADER))
+                .andExpect(VOTE_DTO_MATCHER.contentJson(List.of(VOTE_AISHA_1L)));
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void getVotesWithInvalidLimit() throws Exception {
+        mockMvc.perform(get(REST_URL).param("limit", "0"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
     @Test
     @WithUserDetails(value = ADMIN_MAIL)
     void getVote() throws Exception {
@@ -66,6 +102,30 @@ public class VoteControllerTest extends AbstractSpringBootTest {
                 .andExpect(VOTE_DISTRIBUTION_MATCHER.contentJson(VOTE_DISTRIBUTION));
     }
 
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void getVotesDistributionInRange() throws Exception {
+        LocalDate today = LocalDate.now(clock);
+        mockMvc.perform(get(REST_URL + "/distribution/range")
+                        .param("from", today.minusDays(2).format(DateTimeFormatter.ISO_DATE))
+                        .param("to", today.minusDays(1).format(DateTimeFormatter.ISO_DATE)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(VOTE_DISTRIBUTION_MATCHER.contentJson(
+                        new VoteDistribution(2L, "Aisha", 3L),
+                        new VoteDistribution(1L, "Cherry", 1L)));
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void getVotesDistributionInReversedRange() throws Exception {
+        LocalDate today = LocalDate.now(clock);
+        mockMvc.perform(get(REST_URL + "/distribution/range")
+                        .param("from", today.format(DateTimeFormatter.ISO_DATE))
+                        .param("to", today.minusDays(1).format(DateTimeFormatter.ISO_DATE)))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
     @Test
     @WithUserDetails(value = ADMIN_MAIL)
     void saveVote() throws Exception {
@@ -86,6 +146,42 @@ public class VoteControllerTest extends AbstractSpringBootTest {
         mockMvc.perform(delete(REST_URL)).andExpect(status().isNoContent());
     }
 
+    @Nested
+    class IdempotentVotes {
+        @Test
+        @WithUserDetails(value = ADMIN_MAIL)
+        void repeatVoteWithSameKey() throws Exception {
+            double duplicates = meterRegistry.get("vote.idempotency.duplicates").counter().count();
+            VoteDTO vote = VOTE_DTO_MATCHER.readFromJson(mockMvc.perform(post(REST_URL).param("restaurantId", "1")
+                            .header(IdempotentResponses.HEADER, "repeat-vote"))
+                    .andExpect(status().isCreated()));
+            mockMvc.perform(put(REST_URL).param("restaurantId", "2"))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(post(REST_URL).param("restaurantId", "1")
+                            .header(IdempotentResponses.HEADER, "repeat-vote"))
+                    .andExpect(status().isCreated())
+                    .andExpect(VOTE_DTO_MATCHER.contentJson(vote));
+            // the retry did not vote again
+            mockMvc.perform(get(REST_URL + "/" + vote.getId()))
+                    .andExpect(jsonPath("$.restaurant.id").value(2));
+            assertThat(meterRegistry.get("vote.idempotency.duplicates").counter().count()).isEqualTo(duplicates + 1);
+        }
+
+        @Test
+        @WithUserDetails(value = ADMIN_MAIL)
+        void rejectKeyReusedForAnotherVote() throws Exception {
+            mockMvc.perform(post(REST_URL).param("restaurantId", "1")
+                            .header(IdempotentResponses.HEADER, "reused-key"))
+                    .andExpect(status().isCreated());
+
+            mockMvc.perform(put(REST_URL).param("restaurantId", "2")
+                            .header(IdempotentResponses.HEADER, "reused-key"))
+                    .andExpect(status().isUnprocessableEntity())
+                    .andExpect(jsonPath("$.detail").value("Idempotency-Key reused-key was used for another request"));
+        }
+    }
+
     @Nested
     class ErrorCasesForVote {
         @Test
@@ -0,0 +1,103 @@
+package ru.flint.voteforlunch.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.flint.voteforlunch.AbstractSpringBootTest;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.service.VoteDistributionBroadcaster;
+import ru.flint.voteforlunch.service.VoteService;
+import ru.flint.voteforlunch.service.VoteTally;
+import ru.flint.voteforlunch.web.controller.VoteController;
+import ru.flint.voteforlunch.web.json.JsonUtil;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.flint.voteforlunch.testdata.UserTestData.USER;
+import static ru.flint.voteforlunch.utils.MockAuthorization.userHttpBasic;
+
+/**
+ * Subscribes to the votes distribution stream and votes with committed transactions, as the stream is fed
+ * after commit. Removes the written vote afterwards.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VoteDistributionStreamTest extends AbstractSpringBootTest {
+    private static final String STREAM_URL = VoteController.REST_URL + "/distribution/stream";
+    private static final long USER_ID = 2;
+
+    @Autowired
+    private VoteDistributionBroadcaster broadcaster;
+
+    @Autowired
+    private VoteTally tally;
+
+    @Autowired
+    private VoteService voteService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private Environment environment;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM vote WHERE user_id = ? AND vote_date = ?", USER_ID, LocalDate.now(clock));
+        tally.invalidate();
+    }
+
+    @Test
+    void pushCoalescedDistribution() throws Exception {
+        LocalDate today = LocalDate.now(clock);
+        MvcResult stream = subscribe(today);
+        MvcResult pastStream = subscribe(today.minusDays(2));
+        assertThat(events(stream)).hasSize(1);
+
+        for (int round = 0; round < 5; round++) {
+            mockMvc.perform(put(VoteController.REST_URL)
+                            .param("restaurantId", String.valueOf(round % 2 + 1))
+                            .with(userHttpBasic(USER)))
+                    .andExpect(status().isOk());
+        }
+        broadcaster.push();
+        broadcaster.push();
+
+        List<List<VoteDistribution>> events = events(stream);
+        assertThat(events).hasSize(2);
+        assertThat(events.get(1)).isEqualTo(tally.getDistribution(today));
+        assertThat(events(pastStream)).containsExactly(voteService.getDistributionOnDate(today.minusDays(2)));
+    }
+
+    @Test
+    void streamSettingsAreBound() {
+        // the settings have defaults in code, a misplaced key in application.yml would go unnoticed otherwise
+        assertThat(environment.getProperty("vote.distribution-stream.timeout", Duration.class)).isEqualTo(Duration.ofMinutes(30));
+        assertThat(environment.containsProperty("vote.write-behind.max-pushes-per-second")).isFalse();
+        assertThat(environment.containsProperty("vote.write-behind.timeout")).isFalse();
+    }
+
+    private MvcResult subscribe(LocalDate date) throws Exception {
+        return mockMvc.perform(get(STREAM_URL).param("date", date.toString()).with(userHttpBasic(USER)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private static List<List<VoteDistribution>> events(MvcResult stream) throws Exception {
+        return stream.getResponse().getContentAsString().lines()
+                .filter(line -> line.startsWith("data:"))
+                .map(line -> JsonUtil.readValues(line.substring("data:".length()), VoteDistribution.class))
+                .toList();
+    }
+}
@@ -0,0 +1,118 @@
+package ru.flint.voteforlunch.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.flint.voteforlunch.AbstractSpringBootTest;
+import ru.flint.voteforlunch.model.Menu;
+import ru.flint.voteforlunch.model.MenuItem;
+import ru.flint.voteforlunch.model.Restaurant;
+import ru.flint.voteforlunch.model.Vote;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.model.VotePage;
+import ru.flint.voteforlunch.util.exceptions.IllegalRequestDataException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ArchiveServiceTest extends AbstractSpringBootTest {
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Autowired
+    private VoteService voteService;
+
+    @Autowired
+    private MenuService menuService;
+
+    @Autowired
+    private MenuPublishService publishService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private LocalDate archivedDate;
+    private long menuId;
+
+    @BeforeEach
+    void insertOldRows() {
+        archivedDate = archiveService.getHorizon().minusDays(10);
+        jdbcTemplate.update("INSERT INTO vote (id, user_id, vote_date, restaurant_id, vote_time) VALUES (NEXT VALUE FOR vote_seq, 1, ?, 1, '09:00')", archivedDate);
+        jdbcTemplate.update("INSERT INTO vote (id, user_id, vote_date, restaurant_id, vote_time) VALUES (NEXT VALUE FOR vote_seq, 1, ?, 2, '09:00')", archivedDate.minusDays(1));
+        jdbcTemplate.update("INSERT INTO menu (id, menu_date, restaurant_id) VALUES (NEXT VALUE FOR menu_seq, ?, 1)", archivedDate);
+        menuId = jdbcTemplate.queryForObject("SELECT id FROM menu WHERE menu_date = ?", Long.class, archivedDate);
+        jdbcTemplate.update("INSERT INTO menu_item (id, menu_id, dish_id, price) VALUES (NEXT VALUE FOR menu_item_seq, ?, 1, 10)", menuId);
+
+        assertThat(archiveService.archive()).isEqualTo(3);
+    }
+
+    @Test
+    void moveOldRowsToArchive() {
+        LocalDate horizon = archiveService.getHorizon();
+        assertThat(count("SELECT COUNT(*) FROM vote WHERE vote_date < ?", horizon)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM vote_archive WHERE vote_date < ?", horizon)).isEqualTo(2);
+        assertThat(count("SELECT COUNT(*) FROM menu WHERE menu_date < ?", horizon)).isZero();
+        assertThat(count("SELECT COUNT(*) FROM menu_item_archive WHERE menu_id = ?", menuId)).isEqualTo(1);
+        assertThat(count("SELECT COUNT(*) FROM vote WHERE vote_date >= ?", horizon)).isPositive();
+        assertThat(archiveService.archive()).isZero();
+    }
+
+    @Test
+    void readVoteHistoryFromBothTiers() {
+        LocalDate today = LocalDate.now(clock);
+        assertThat(voteService.getAllForUser(1)).extracting(Vote::getVoteDate)
+                .containsExactly(today.minusDays(1), today.minusDays(2), archivedDate, archivedDate.minusDays(1));
+
+        VotePage first = voteService.getPageForUser(1, null, 3);
+        assertThat(first.votes()).extracting(Vote::getVoteDate)
+                .containsExactly(today.minusDays(1), today.minusDays(2), archivedDate);
+        VotePage last = voteService.getPageForUser(1, first.nextCursor(), 3);
+        assertThat(last.votes()).extracting(Vote::getVoteDate).containsExactly(archivedDate.minusDays(1));
+        assertThat(last.nextCursor()).isNull();
+
+        Vote archived = last.votes().get(0);
+        assertThat(voteService.get(archived.getId(), 1).getRestaurant().getName()).isEqualTo("Aisha");
+    }
+
+    @Test
+    void readDistributionOfArchivedDate() {
+        assertThat(voteService.getDistributionOnDate(archivedDate)).containsExactly(
+                new VoteDistribution(1L, "Cherry", 1L),
+                new VoteDistribution(2L, "Aisha", 0L));
+    }
+
+    @Test
+    void readMenusFromBothTiers() {
+        List<Menu> menus = menuService.getAllWithRestaurants(archivedDate);
+        assertThat(menus).extracting(Menu::getId).containsExactly(menuId);
+        assertThat(menus.get(0).getRestaurant().getName()).isEqualTo("Cherry");
+
+        Menu menu = menuService.getByIdWithAllData(menuId);
+        assertThat(menu.getMenuItemSet()).extracting(MenuItem::getPrice).containsExactly(10);
+        assertThat(menu.getMenuItemSet()).extracting(item -> item.getDish().getName()).containsExactly("Tea");
+    }
+
+    @Test
+    void rejectMenusOnArchivedDate() {
+        Menu menu = new Menu();
+        menu.setMenuDate(archivedDate);
+        menu.setRestaurant(new Restaurant("Cherry"));
+        menu.getRestaurant().setId(1L);
+
+        assertThatThrownBy(() -> menuService.create(menu))
+                .isInstanceOf(IllegalRequestDataException.class)
+                .hasMessageContaining("archived");
+        assertThatThrownBy(() -> publishService.copy(LocalDate.now(clock), archivedDate, null))
+                .isInstanceOf(IllegalRequestDataException.class)
+                .hasMessageContaining("archived");
+        assertThat(count("SELECT COUNT(*) FROM menu WHERE menu_date = ?", archivedDate)).isZero();
+    }
+
+    private Long count(String sql, Object arg) {
+        return jdbcTemplate.queryForObject(sql, Long.class, arg);
+    }
+}
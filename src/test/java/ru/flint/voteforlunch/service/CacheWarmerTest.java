@@ -0,0 +1,100 @@
+package ru.flint.voteforlunch.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import ru.flint.voteforlunch.config.CacheConfiguration;
+import ru.flint.voteforlunch.model.Menu;
+
+import java.time.*;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CacheWarmerTest {
+    // a Friday
+    private static final ZonedDateTime NOW = ZonedDateTime.of(2023, 4, 21, 23, 0, 0, 0, ZoneId.of("GMT"));
+    private static final LocalDate TODAY = NOW.toLocalDate();
+
+    private CacheWarmer warmer;
+    private MeterRegistry meterRegistry;
+
+    @Mock
+    private MenuService menuService;
+    @Mock
+    private VoteService voteService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        warmer = new CacheWarmer(menuService, voteService, meterRegistry, Clock.fixed(NOW.toInstant(), NOW.getZone()),
+                false, LocalTime.of(23, 50), LocalTime.of(0, 1), EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY));
+    }
+
+    @Test
+    void warmMenus() {
+        LocalDate monday = TODAY.plusDays(3);
+        when(menuService.getAllWithRestaurants(monday)).thenReturn(List.of(menu(1L), menu(2L)));
+
+        assertThat(warmer.warmMenus(monday)).isEqualTo(3);
+
+        verify(menuService).getByIdWithAllData(1L);
+        verify(menuService).getByIdWithAllData(2L);
+        assertThat(meterRegistry.get("cache.warmup").tag("target", "menus").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.warmup.entries").tag("target", "menus").gauge().value()).isEqualTo(3);
+    }
+
+    @Test
+    void warmDistribution() {
+        assertThat(warmer.warmDistribution(TODAY)).isEqualTo(2);
+
+        verify(voteService).getDistributionOnDate(TODAY);
+        verify(voteService).getDistributionOnDate(TODAY.minusDays(1));
+        assertThat(meterRegistry.get("cache.warmup").tag("target", "distribution").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.warmup.entries").tag("target", "distribution").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void nextBusinessDaySkipsDaysOff() {
+        assertThat(warmer.nextBusinessDay(TODAY)).isEqualTo(TODAY.plusDays(3));
+        assertThat(warmer.nextBusinessDay(TODAY.minusDays(1))).isEqualTo(TODAY);
+    }
+
+    @Test
+    void delayUntilNextTime() {
+        assertThat(warmer.delayUntil(LocalTime.of(23, 50))).isEqualTo(Duration.ofMinutes(50));
+        assertThat(warmer.delayUntil(LocalTime.of(0, 1))).isEqualTo(Duration.ofMinutes(61));
+    }
+
+    @Test
+    void onlyWarmedCachesOutliveTheNight() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCacheSpecification("expireAfterAccess=5m");
+        cacheManager.setCacheNames(List.of("menus", "userProfile"));
+        new CacheConfiguration().warmedCaches(List.of("menus"), "expireAfterAccess=1d").customize(cacheManager);
+
+        assertThat(expireAfterAccess(cacheManager, "menus")).isEqualTo(Duration.ofDays(1));
+        assertThat(expireAfterAccess(cacheManager, "userProfile")).isEqualTo(Duration.ofMinutes(5));
+    }
+
+    private static Duration expireAfterAccess(CacheManager cacheManager, String cacheName) {
+        Cache<?, ?> cache = (Cache<?, ?>) cacheManager.getCache(cacheName).getNativeCache();
+        return cache.policy().expireAfterAccess().orElseThrow().getExpiresAfter();
+    }
+
+    private static Menu menu(long id) {
+        Menu menu = new Menu();
+        menu.setId(id);
+        return menu;
+    }
+}
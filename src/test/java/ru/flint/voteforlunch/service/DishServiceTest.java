@@ -28,6 +28,12 @@ class DishServiceTest {
     @Mock
     private DishRepository repository;
 
+    @Mock
+    private DataVersions versions;
+
+    @Mock
+    private CacheEvictions cacheEvictions;
+
     @Captor
     ArgumentCaptor<Dish> dishCaptor;
 
@@ -37,7 +43,7 @@ class DishServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        service = new DishService(repository);
+        service = new DishService(repository, versions, cacheEvictions);
     }
 
     @Nested
@@ -82,7 +88,7 @@ class DishServiceTest {
             dish.setId(null);
 
             service.create(dish);
-            then(repository).should().save(dishCaptor.capture());
+            then(repository).should().saveAndFlush(dishCaptor.capture());
 
             assertThat(dishCaptor.getValue())
                     .usingRecursiveComparison()
@@ -99,6 +105,8 @@ class DishServiceTest {
             then(repository).should().deleteById(idCaptor.capture());
 
             assertThat(idCaptor.getValue()).isEqualTo(1L);
+            then(cacheEvictions).should().clear("menu", "menus", "menuResponse", "menusResponse");
+            then(versions).should().allMenusChanged();
         }
     }
 
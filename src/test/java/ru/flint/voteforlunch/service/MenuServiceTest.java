@@ -10,6 +10,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import ru.flint.voteforlunch.util.exceptions.IllegalRequestDataException;
 import ru.flint.voteforlunch.model.Menu;
+import ru.flint.voteforlunch.repository.MenuArchiveRepository;
 import ru.flint.voteforlunch.repository.MenuRepository;
 
 import java.time.LocalDate;
@@ -19,6 +20,7 @@ import java.util.Optional;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.when;
 
 class MenuServiceTest {
@@ -27,6 +29,18 @@ class MenuServiceTest {
     @Mock
     private MenuRepository repository;
 
+    @Mock
+    private MenuArchiveRepository archive;
+
+    @Mock
+    private ArchiveService archiveService;
+
+    @Mock
+    private DataVersions versions;
+
+    @Mock
+    private CacheEvictions cacheEvictions;
+
     @Captor
     ArgumentCaptor<Menu> MenuCaptor;
 
@@ -36,7 +50,7 @@ class MenuServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        service = new MenuService(repository);
+        service = new MenuService(repository, archive, archiveService, versions, cacheEvictions);
     }
 
     @Nested
@@ -80,14 +94,17 @@ class MenuServiceTest {
         void create() {
             Menu Menu = Instancio.create(Menu.class);
             Menu.setId(null);
+            when(repository.saveAndFlush(Menu)).thenReturn(Menu);
 
             service.create(Menu);
-            then(repository).should().save(MenuCaptor.capture());
+            then(repository).should().saveAndFlush(MenuCaptor.capture());
 
             assertThat(MenuCaptor.getValue())
                     .usingRecursiveComparison()
                     .ignoringFields("id")
                     .isEqualTo(Menu);
+            then(cacheEvictions).should().evict(Menu.getMenuDate(), "menus", "menusResponse");
+            then(versions).should().menusChanged(Menu.getMenuDate());
         }
     }
 
@@ -95,10 +112,16 @@ class MenuServiceTest {
     class DeleteMenu {
         @Test
         void delete() {
+            LocalDate date = LocalDate.of(2022, 11, 15);
+            when(repository.findMenuDate(1L)).thenReturn(Optional.of(date));
+
             service.delete(1L);
             then(repository).should().deleteById(idCaptor.capture());
 
             assertThat(idCaptor.getValue()).isEqualTo(1L);
+            then(cacheEvictions).should().evict(1L, "menu", "menuResponse");
+            then(cacheEvictions).should().evict(date, "menus", "menusResponse");
+            then(versions).should().menusChanged(date);
         }
     }
 
@@ -107,7 +130,7 @@ class MenuServiceTest {
         @Test
         void update() {
             Menu menu = Instancio.create(Menu.class);
-            when(repository.existsById(menu.getId())).thenReturn(true);
+            when(repository.findMenuDate(menu.getId())).thenReturn(Optional.of(menu.getMenuDate()));
             when(repository.save(menu)).thenReturn(menu);
             when(repository.findAllByIdWithAllData(menu.getId())).thenReturn(Optional.of(menu));
 
@@ -118,6 +141,7 @@ class MenuServiceTest {
 
             updatedMenu.setId(menu.getId());
             assertThat(MenuCaptor.getValue()).usingRecursiveComparison().isEqualTo(updatedMenu);
+            then(versions).should(atLeastOnce()).menusChanged(menu.getMenuDate());
         }
 
         @Test
@@ -26,6 +26,10 @@ class RestaurantServiceTest {
 
     @Mock
     private RestaurantRepository repository;
+    @Mock
+    private VoteTally voteTally;
+    @Mock
+    private DataVersions versions;
 
     @Captor
     ArgumentCaptor<Restaurant> restaurantCaptor;
@@ -36,7 +40,7 @@ class RestaurantServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        service = new RestaurantService(repository);
+        service = new RestaurantService(repository, voteTally, versions);
     }
 
     @Nested
@@ -80,7 +84,7 @@ class RestaurantServiceTest {
             restaurant.setId(null);
 
             service.create(restaurant);
-            then(repository).should().save(restaurantCaptor.capture());
+            then(repository).should().saveAndFlush(restaurantCaptor.capture());
 
             assertThat(restaurantCaptor.getValue())
                     .usingRecursiveComparison()
@@ -10,15 +10,20 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.data.domain.Sort;
 import ru.flint.voteforlunch.util.exceptions.IllegalRequestDataException;
+import ru.flint.voteforlunch.model.Role;
 import ru.flint.voteforlunch.model.User;
+import ru.flint.voteforlunch.model.UserProfile;
 import ru.flint.voteforlunch.repository.UserRepository;
+import ru.flint.voteforlunch.web.security.AuthenticationCache;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.when;
 
 class UserServiceTest {
@@ -26,6 +31,14 @@ class UserServiceTest {
 
     @Mock
     private UserRepository repository;
+    @Mock
+    private VoteTally voteTally;
+    @Mock
+    private AuthenticationCache authenticationCache;
+    @Mock
+    private DataVersions versions;
+    @Mock
+    private CacheEvictions cacheEvictions;
 
     @Captor
     ArgumentCaptor<User> userCaptor;
@@ -36,7 +49,7 @@ class UserServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        service = new UserService(repository);
+        service = new UserService(repository, voteTally, authenticationCache, versions, cacheEvictions);
     }
 
     @Nested
@@ -52,6 +65,28 @@ class UserServiceTest {
             assertThat(actualUser).usingRecursiveComparison().isEqualTo(expectedUser);
         }
 
+        @Test
+        void shouldFindProfile() {
+            when(repository.getProfile(1L)).thenReturn(List.of(
+                    new UserProfile(1L, "admin@ya.ru", "Admin", "Adminov", true, Role.USER),
+                    new UserProfile(1L, "admin@ya.ru", "Admin", "Adminov", true, Role.ADMIN)));
+
+            UserProfile profile = service.getProfile(1L);
+
+            assertThat(profile).isEqualTo(new UserProfile(1L, "admin@ya.ru", "Admin", "Adminov", true,
+                    Set.of(Role.USER, Role.ADMIN)));
+            then(repository).should(never()).findById(1L);
+        }
+
+        @Test
+        void shouldThrowWhenFindNotExistedProfile() {
+            when(repository.getProfile(1L)).thenReturn(List.of());
+
+            assertThatThrownBy(() -> service.getProfile(1L))
+                    .isInstanceOf(IllegalRequestDataException.class)
+                    .hasMessageContaining(String.format("User with id = %d not found", 1L));
+        }
+
         @Test
         void shouldThrowWhenFindNotExisted() {
             when(repository.findById(1L)).thenReturn(Optional.empty());
@@ -81,7 +116,7 @@ class UserServiceTest {
             user.setId(null);
 
             service.create(user);
-            then(repository).should().save(userCaptor.capture());
+            then(repository).should().saveAndFlush(userCaptor.capture());
 
             assertThat(userCaptor.getValue())
                     .usingRecursiveComparison()
@@ -98,6 +133,8 @@ class UserServiceTest {
             then(repository).should().deleteById(idCaptor.capture());
 
             assertThat(idCaptor.getValue()).isEqualTo(1L);
+            then(authenticationCache).should().evictUser(1L);
+            then(cacheEvictions).should().evict(1L, "userProfile");
         }
     }
 
@@ -115,6 +152,8 @@ class UserServiceTest {
 
             updatedUser.setId(user.getId());
             assertThat(userCaptor.getValue()).usingRecursiveComparison().isEqualTo(updatedUser);
+            then(authenticationCache).should().evictUser(user.getId());
+            then(cacheEvictions).should().evict(user.getId(), "userProfile");
         }
 
         @Test
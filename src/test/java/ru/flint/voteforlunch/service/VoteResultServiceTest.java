@@ -0,0 +1,157 @@
+package ru.flint.voteforlunch.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.flint.voteforlunch.AbstractSpringBootTest;
+import ru.flint.voteforlunch.model.RollupPeriod;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.repository.VoteRepository;
+import ru.flint.voteforlunch.repository.VoteResultRepository;
+import ru.flint.voteforlunch.repository.VoteRollupRepository;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VoteResultServiceTest extends AbstractSpringBootTest {
+    @Autowired
+    private VoteResultService service;
+
+    @Autowired
+    private VoteResultRepository resultRepository;
+
+    @Autowired
+    private VoteRollupRepository rollupRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void backfillClosedDates() {
+        LocalDate today = LocalDate.now(clock);
+
+        assertThat(resultRepository.getDistributionOnDate(today.minusDays(2))).containsExactly(
+                new VoteDistribution(2L, "Aisha", 2L),
+                new VoteDistribution(1L, "Cherry", 0L));
+        assertThat(resultRepository.getDistributionOnDate(today.minusDays(1))).containsExactly(
+                new VoteDistribution(2L, "Aisha", 1L),
+                new VoteDistribution(1L, "Cherry", 1L));
+        assertThat(resultRepository.getDistributionOnDate(today)).isEmpty();
+    }
+
+    @Test
+    void keepResultsOfClosedDate() {
+        LocalDate date = LocalDate.now(clock).minusDays(2);
+        List<VoteDistribution> results = service.getDistributionOnDate(date);
+
+        jdbcTemplate.update("DELETE FROM vote WHERE vote_date = ?", date);
+
+        assertThat(service.getDistributionOnDate(date)).isEqualTo(results);
+        assertThat(voteRepository.getDistributionOnDate(date)).extracting(VoteDistribution::voteCount).containsOnly(0L);
+    }
+
+    @Test
+    void finalizeMissedDate() {
+        LocalDate date = LocalDate.now(clock).minusDays(5);
+        jdbcTemplate.update("INSERT INTO vote (id, user_id, vote_date, restaurant_id, vote_time) VALUES (NEXT VALUE FOR vote_seq, 1, ?, 1, '09:00')", date);
+
+        assertThat(service.getDistributionOnDate(date)).containsExactly(
+                new VoteDistribution(1L, "Cherry", 1L),
+                new VoteDistribution(2L, "Aisha", 0L));
+        assertThat(resultRepository.getDistributionOnDate(date)).hasSize(2);
+    }
+
+    @Test
+    void notFinalizeDateWithoutVotes() {
+        LocalDate date = LocalDate.now(clock).minusYears(10);
+        long rollupsBefore = rollupRepository.count();
+
+        assertThat(service.getDistributionOnDate(date)).containsExactly(
+                new VoteDistribution(2L, "Aisha", 0L),
+                new VoteDistribution(1L, "Cherry", 0L));
+        assertThat(resultRepository.getDistributionOnDate(date)).isEmpty();
+        assertThat(rollupRepository.count()).isEqualTo(rollupsBefore);
+    }
+
+    @Test
+    void refreshChangedDate() {
+        LocalDate date = LocalDate.now(clock).minusDays(1);
+        jdbcTemplate.update("UPDATE vote SET restaurant_id = 2 WHERE vote_date = ?", date);
+
+        service.refresh(List.of(date, LocalDate.now(clock)));
+
+        assertThat(service.getDistributionOnDate(date)).containsExactly(
+                new VoteDistribution(2L, "Aisha", 2L),
+                new VoteDistribution(1L, "Cherry", 0L));
+    }
+
+    @Test
+    void rollUpClosedDates() {
+        LocalDate today = LocalDate.now(clock);
+
+        assertThat(rollupRepository.getDistribution(RollupPeriod.MONTH, List.of(today.withDayOfMonth(1))))
+                .containsExactlyInAnyOrder(
+                        new VoteDistribution(2L, "Aisha", 3L),
+                        new VoteDistribution(1L, "Cherry", 1L));
+        assertThat(rollupRepository.getDistribution(RollupPeriod.WEEK, List.of(today.with(DayOfWeek.MONDAY))))
+                .containsExactlyInAnyOrder(
+                        new VoteDistribution(2L, "Aisha", 1L),
+                        new VoteDistribution(1L, "Cherry", 1L));
+    }
+
+    @Test
+    void getDistributionInRange() {
+        LocalDate today = LocalDate.now(clock);
+
+        assertThat(service.getDistributionInRange(today.minusDays(2), today.plusDays(3))).containsExactly(
+                new VoteDistribution(2L, "Aisha", 3L),
+                new VoteDistribution(1L, "Cherry", 1L));
+        assertThat(service.getDistributionInRange(today.minusDays(1), today.minusDays(1))).containsExactly(
+                new VoteDistribution(2L, "Aisha", 1L),
+                new VoteDistribution(1L, "Cherry", 1L));
+        assertThat(service.getDistributionInRange(today, today.plusDays(3))).isEmpty();
+    }
+
+    @Test
+    void getDistributionInRangeFromRollups() {
+        // a full month and a full week before it, every date with one vote for Cherry
+        LocalDate monthStart = LocalDate.now(clock).minusMonths(2).withDayOfMonth(1);
+        LocalDate from = monthStart.minusDays(1).with(DayOfWeek.MONDAY).minusWeeks(1);
+        LocalDate to = monthStart.plusMonths(1).minusDays(1);
+        from.datesUntil(to.plusDays(1)).forEach(date -> jdbcTemplate.update(
+                "INSERT INTO vote (id, user_id, vote_date, restaurant_id, vote_time) VALUES (NEXT VALUE FOR vote_seq, 1, ?, 1, '09:00')", date));
+        service.backfill();
+
+        long days = from.datesUntil(to.plusDays(1)).count();
+        assertThat(service.getDistributionInRange(from, to)).containsExactly(
+                new VoteDistribution(1L, "Cherry", days),
+                new VoteDistribution(2L, "Aisha", 0L));
+        assertThat(rollupRepository.getDistribution(RollupPeriod.MONTH, List.of(monthStart)))
+                .contains(new VoteDistribution(1L, "Cherry", (long) monthStart.lengthOfMonth()));
+
+        // the rollups are used for the full periods, the results only for the remaining dates
+        jdbcTemplate.update("DELETE FROM vote_result WHERE result_date BETWEEN ? AND ?", monthStart, to);
+        assertThat(service.getDistributionInRange(from, to)).containsExactly(
+                new VoteDistribution(1L, "Cherry", days),
+                new VoteDistribution(2L, "Aisha", 0L));
+    }
+
+    @Test
+    void refreshRollupsOfChangedDate() {
+        LocalDate date = LocalDate.now(clock).minusDays(1);
+        jdbcTemplate.update("UPDATE vote SET restaurant_id = 2 WHERE vote_date = ?", date);
+
+        service.refresh(List.of(date));
+
+        assertThat(rollupRepository.getDistribution(RollupPeriod.MONTH, List.of(date.withDayOfMonth(1))))
+                .containsExactlyInAnyOrder(
+                        new VoteDistribution(2L, "Aisha", 4L),
+                        new VoteDistribution(1L, "Cherry", 0L));
+    }
+}
@@ -1,30 +1,37 @@
 package ru.flint.voteforlunch.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.instancio.Instancio;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import ru.flint.voteforlunch.util.exceptions.IllegalRequestDataException;
 import ru.flint.voteforlunch.util.exceptions.VoteTimeConstraintException;
 import ru.flint.voteforlunch.model.Restaurant;
 import ru.flint.voteforlunch.model.User;
 import ru.flint.voteforlunch.model.Vote;
 import ru.flint.voteforlunch.model.VoteDistribution;
-import ru.flint.voteforlunch.repository.RestaurantRepository;
-import ru.flint.voteforlunch.repository.UserRepository;
+import ru.flint.voteforlunch.model.VotePage;
+import ru.flint.voteforlunch.repository.VoteArchiveRepository;
 import ru.flint.voteforlunch.repository.VoteRepository;
 
 import java.time.*;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 
 class VoteServiceTest {
@@ -41,27 +48,35 @@ class VoteServiceTest {
             NOW.getZone());
 
     private VoteService service;
+    private MeterRegistry meterRegistry;
 
     @Mock
     private VoteRepository voteRepository;
     @Mock
-    private UserRepository userRepository;
+    private VoteArchiveRepository voteArchive;
     @Mock
-    private RestaurantRepository restaurantRepository;
+    private VoteTally voteTally;
+    @Mock
+    private VoteWriteBehind writeBehind;
+    @Mock
+    private VoteDistributionBroadcaster broadcaster;
+    @Mock
+    private DataVersions versions;
+    @Mock
+    private VoteResultService voteResults;
     @Mock
     private Clock clock;
 
-    @Captor
-    ArgumentCaptor<Vote> voteCaptor;
-    @Captor
-    ArgumentCaptor<Long> idCaptor;
-
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
         when(clock.getZone()).thenReturn(NOW.getZone());
         when(clock.instant()).thenReturn(NOW.toInstant());
-        service = new VoteService(voteRepository, userRepository, restaurantRepository, clock, TIME_CONSTRAINT);
+        when(voteTally.vote(any())).thenAnswer(invocation ->
+                invocation.<Function<LocalDateTime, ?>>getArgument(0).apply(LocalDateTime.now(clock)));
+        meterRegistry = new SimpleMeterRegistry();
+        service = new VoteService(voteRepository, voteArchive, voteTally, writeBehind, broadcaster, versions, voteResults, clock,
+                meterRegistry, TIME_CONSTRAINT);
     }
 
     @Test
@@ -76,6 +91,60 @@ class VoteServiceTest {
         assertThat(service.getDistributionOnDate(date)).usingRecursiveComparison().isEqualTo(votesList);
     }
 
+    @Test
+    void getClosedVotesDistributionFromResults() {
+        List<VoteDistribution> votesList = List.of(
+                new VoteDistribution(1L, "Restaurant One", 65L),
+                new VoteDistribution(2L, "Restaurant Two", 35L));
+        LocalDate date = LocalDate.of(2023, 4, 20);
+
+        when(voteResults.isClosed(date)).thenReturn(true);
+        when(voteResults.getDistributionOnDate(date)).thenReturn(votesList);
+
+        assertThat(service.getDistributionOnDate(date)).usingRecursiveComparison().isEqualTo(votesList);
+        then(voteRepository).should(never()).getDistributionOnDate(date);
+    }
+
+    @Test
+    void getLiveVotesDistributionFromTally() {
+        List<VoteDistribution> votesList = List.of(
+                new VoteDistribution(1L, "Restaurant One", 3L),
+                new VoteDistribution(2L, "Restaurant Two", 1L));
+        LocalDate date = LocalDate.now(clock);
+
+        when(voteTally.isLive(date)).thenReturn(true);
+        when(voteTally.getDistribution(date)).thenReturn(votesList);
+
+        assertThat(service.getDistributionOnDate(date)).usingRecursiveComparison().isEqualTo(votesList);
+        then(voteRepository).should(never()).getDistributionOnDate(date);
+    }
+
+    @Test
+    void getVotesDistributionInRangeFromResultsAndTally() {
+        LocalDate today = LocalDate.now(clock);
+        LocalDate from = today.minusDays(30);
+
+        when(voteResults.getDistributionInRange(from, today)).thenReturn(List.of(
+                new VoteDistribution(1L, "Restaurant One", 40L),
+                new VoteDistribution(2L, "Restaurant Two", 50L)));
+        when(voteTally.getDistribution(today)).thenReturn(List.of(
+                new VoteDistribution(1L, "Restaurant One", 20L),
+                new VoteDistribution(2L, "Restaurant Two", 5L)));
+
+        assertThat(service.getDistributionInRange(from, today)).usingRecursiveComparison().isEqualTo(List.of(
+                new VoteDistribution(1L, "Restaurant One", 60L),
+                new VoteDistribution(2L, "Restaurant Two", 55L)));
+        then(voteRepository).should(never()).getDistributionOnDate(today);
+    }
+
+    @Test
+    void throwWhenRangeIsReversed() {
+        LocalDate today = LocalDate.now(clock);
+
+        assertThatThrownBy(() -> service.getDistributionInRange(today, today.minusDays(1)))
+                .isInstanceOf(IllegalRequestDataException.class);
+    }
+
     @Nested
     class FindVotes {
         @Test
@@ -102,76 +171,193 @@ class VoteServiceTest {
 
             assertThat(service.getAllForUser(user1.getId())).usingRecursiveComparison().isEqualTo(List.of(vote1, vote3));
         }
+
+        @Test
+        void findUserVotesPage() {
+            Vote vote1 = Instancio.create(Vote.class);
+            Vote vote2 = Instancio.create(Vote.class);
+            Vote vote3 = Instancio.create(Vote.class);
+            LocalDate cursor = LocalDate.of(2023, 4, 1);
+            when(voteRepository.getPageForUserBefore(1L, cursor, PageRequest.of(0, 3))).thenReturn(List.of(vote1, vote2, vote3));
+
+            VotePage page = service.getPageForUser(1L, cursor, 2);
+
+            assertThat(page.votes()).usingRecursiveComparison().isEqualTo(List.of(vote1, vote2));
+            assertThat(page.nextCursor()).isEqualTo(vote2.getVoteDate());
+        }
+
+        @Test
+        void findLastUserVotesPage() {
+            Vote vote = Instancio.create(Vote.class);
+            when(voteRepository.getFirstPageForUser(1L, PageRequest.of(0, 3))).thenReturn(List.of(vote));
+
+            VotePage page = service.getPageForUser(1L, null, 2);
+
+            assertThat(page.votes()).usingRecursiveComparison().isEqualTo(List.of(vote));
+            assertThat(page.nextCursor()).isNull();
+        }
     }
 
     @Nested
     class SaveVotes {
         @Test
-        void saveNewVote() {
-            User user = Instancio.create(User.class);
-            User userIdOnly = new User();
-            userIdOnly.setId(user.getId());
+        void saveVote() {
+            Restaurant restaurant = Instancio.create(Restaurant.class);
+            long userId = 1L;
+            when(voteTally.findRestaurant(restaurant.getId())).thenReturn(Optional.of(restaurant));
+            when(voteRepository.upsert(userId, LocalDate.now(clock), restaurant.getId(), LocalTime.now(clock), TIME_CONSTRAINT))
+                    .thenReturn(Optional.of(7L));
+
+            Vote vote = service.saveAndReturnWithDetails(restaurant.getId(), userId);
+
+            assertThat(vote.getId()).isEqualTo(7L);
+            assertThat(vote.getRestaurant()).isEqualTo(restaurant);
+            assertThat(vote.getVoteDate()).isEqualTo(LocalDate.now(clock));
+            assertThat(vote.getVoteTime()).isEqualTo(LocalTime.now(clock));
+            then(voteTally).should().register(LocalDate.now(clock), userId, restaurant.getId(), LocalTime.now(clock));
+            then(broadcaster).should().changed(LocalDate.now(clock));
+        }
+
+        @Test
+        void repeatUpsertAfterConcurrentFirstVote() {
+            Restaurant restaurant = Instancio.create(Restaurant.class);
+            long userId = 1L;
+            when(voteTally.findRestaurant(restaurant.getId())).thenReturn(Optional.of(restaurant));
+            when(voteRepository.upsert(userId, LocalDate.now(clock), restaurant.getId(), LocalTime.now(clock), TIME_CONSTRAINT))
+                    .thenThrow(new DataIntegrityViolationException("Unique index or primary key violation: UC_VOTE_USER_ID_VOTE_DATE"))
+                    .thenReturn(Optional.of(7L));
+
+            assertThat(service.saveAndReturnWithDetails(restaurant.getId(), userId).getId()).isEqualTo(7L);
+            then(voteRepository).should(times(2))
+                    .upsert(userId, LocalDate.now(clock), restaurant.getId(), LocalTime.now(clock), TIME_CONSTRAINT);
+            assertThat(meterRegistry.get("vote.conflicts").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        void keepNewerVoteCommittedConcurrently() {
+            Restaurant restaurant = Instancio.create(Restaurant.class);
+            long userId = 1L;
+            Vote newer = Instancio.create(Vote.class);
+            when(voteTally.findRestaurant(restaurant.getId())).thenReturn(Optional.of(restaurant));
+            when(voteRepository.upsert(userId, LocalDate.now(clock), restaurant.getId(), LocalTime.now(clock), TIME_CONSTRAINT))
+                    .thenReturn(Optional.empty());
+            when(voteRepository.getByVoteDateAndUserId(LocalDate.now(clock), userId)).thenReturn(Optional.of(newer));
+
+            assertThat(service.saveAndReturnWithDetails(restaurant.getId(), userId)).isSameAs(newer);
+            then(voteTally).should(never()).register(LocalDate.now(clock), userId, restaurant.getId(), LocalTime.now(clock));
+            assertThat(meterRegistry.get("vote.cutoff.rejections").counter().count()).isZero();
+        }
 
+        @Test
+        void throwWhenChangeVoteWithTimeConstraintViolation() {
             Restaurant restaurant = Instancio.create(Restaurant.class);
-            Restaurant restaurantIdOnly = new Restaurant();
-            restaurantIdOnly.setId(restaurant.getId());
+            long userId = 1L;
+            when(clock.instant()).thenReturn(NOW_AFTER_TIME_CONSTRAINT.toInstant());
+            when(voteTally.findRestaurant(restaurant.getId())).thenReturn(Optional.of(restaurant));
+            when(voteRepository.upsert(userId, LocalDate.now(clock), restaurant.getId(), LocalTime.now(clock), TIME_CONSTRAINT))
+                    .thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> service.saveAndReturnWithDetails(restaurant.getId(), userId))
+                    .isInstanceOf(VoteTimeConstraintException.class)
+                    .hasMessageContaining(String.format("You can only change your vote until %s", TIME_CONSTRAINT));
+            then(voteTally).should(never()).register(LocalDate.now(clock), userId, restaurant.getId(), LocalTime.now(clock));
+            assertThat(meterRegistry.get("vote.cutoff.rejections").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        void throwWhenSaveVoteForAbsentRestaurant() {
+            when(voteTally.findRestaurant(1L)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> service.saveAndReturnWithDetails(1L, 1L))
+                    .isInstanceOf(IllegalRequestDataException.class)
+                    .hasMessageContaining("Restaurant with id = 1 not found");
+            then(voteRepository).shouldHaveNoInteractions();
+        }
+    }
 
-            when(voteRepository.getByVoteDateAndUserId(LocalDate.now(clock), user.getId())).thenReturn(Optional.empty());
-            when(restaurantRepository.getReferenceById(restaurant.getId())).thenReturn(restaurantIdOnly);
-            when(userRepository.getReferenceById(user.getId())).thenReturn(userIdOnly);
+    @Nested
+    class WriteBehindVotes {
+        @Test
+        void acceptNewVote() {
+            Restaurant restaurant = Instancio.create(Restaurant.class);
+            long userId = 1L;
+            when(voteTally.findRestaurant(restaurant.getId())).thenReturn(Optional.of(restaurant));
+            when(voteTally.tryRegister(LocalDate.now(clock), userId, restaurant.getId(), LocalTime.now(clock), true))
+                    .thenReturn(true);
 
-            service.saveAndReturnWithDetails(restaurant.getId(), user.getId());
+            Vote vote = service.accept(restaurant.getId(), userId);
 
-            then(voteRepository).should().save(voteCaptor.capture());
+            assertThat(vote.getRestaurant()).isEqualTo(restaurant);
+            assertThat(vote.getVoteDate()).isEqualTo(LocalDate.now(clock));
+            then(writeBehind).should().enqueueVote(userId, restaurant.getId(), LocalDate.now(clock), LocalTime.now(clock));
+            then(broadcaster).should().changed(LocalDate.now(clock));
+            then(voteRepository).shouldHaveNoInteractions();
+        }
 
-            Vote vote = new Vote();
-            vote.setRestaurant(restaurant);
-            vote.setUser(user);
-            vote.setVoteDate(LocalDate.now(clock));
-            vote.setVoteTime(LocalTime.now(clock));
-            Vote voteCaptorValue = voteCaptor.getValue();
-            assertThat(voteCaptorValue.getId()).isEqualTo(vote.getId());
-            assertThat(voteCaptorValue.getVoteTime()).isEqualTo(vote.getVoteTime());
-            assertThat(voteCaptorValue.getVoteDate()).isEqualTo(vote.getVoteDate());
-            assertThat(voteCaptorValue.getUser().getId()).isEqualTo(vote.getUser().getId());
-            assertThat(voteCaptorValue.getRestaurant().getId()).isEqualTo(vote.getRestaurant().getId());
+        @Test
+        void keepNewerVoteCommittedConcurrently() {
+            Restaurant restaurant = Instancio.create(Restaurant.class);
+            long userId = 1L;
+            Vote newer = Instancio.create(Vote.class);
+            when(voteTally.findRestaurant(restaurant.getId())).thenReturn(Optional.of(restaurant));
+            when(voteRepository.upsert(userId, LocalDate.now(clock), restaurant.getId(), LocalTime.now(clock), TIME_CONSTRAINT))
+                    .thenReturn(Optional.empty());
+            when(voteRepository.getByVoteDateAndUserId(LocalDate.now(clock), userId)).thenReturn(Optional.of(newer));
+
+            assertThat(service.saveAndReturnWithDetails(restaurant.getId(), userId)).isSameAs(newer);
+            then(voteTally).should(never()).register(LocalDate.now(clock), userId, restaurant.getId(), LocalTime.now(clock));
+            assertThat(meterRegistry.get("vote.cutoff.rejections").counter().count()).isZero();
         }
 
         @Test
-        void updateVote() {
-            User user = Instancio.create(User.class);
+        void throwWhenChangeVoteWithTimeConstraintViolation() {
+            Restaurant restaurant = Instancio.create(Restaurant.class);
+            long userId = 1L;
+            when(clock.instant()).thenReturn(NOW_AFTER_TIME_CONSTRAINT.toInstant());
+            when(voteTally.findRestaurant(restaurant.getId())).thenReturn(Optional.of(restaurant));
+            when(voteTally.tryRegister(LocalDate.now(clock), userId, restaurant.getId(), LocalTime.now(clock), false))
+                    .thenReturn(false);
+
+            assertThatThrownBy(() -> service.accept(restaurant.getId(), userId))
+                    .isInstanceOf(VoteTimeConstraintException.class);
+            then(writeBehind).shouldHaveNoInteractions();
+        }
 
+        @Test
+        void invalidateTallyWhenVoteIsNotQueued() {
             Restaurant restaurant = Instancio.create(Restaurant.class);
-            Vote vote = new Vote();
-            vote.setId(1L);
-            vote.setRestaurant(restaurant);
-            vote.setUser(user);
-            vote.setVoteDate(LocalDate.now(clock));
-            vote.setVoteTime(LocalTime.now(clock).minusMinutes(30));
-
-            Restaurant updatedRestaurant = Instancio.create(Restaurant.class);
-            Restaurant updatedRestaurantIdOnly = new Restaurant();
-            updatedRestaurantIdOnly.setId(updatedRestaurant.getId());
-
-            when(voteRepository.getByVoteDateAndUserId(LocalDate.now(clock), user.getId())).thenReturn(Optional.of(vote));
-            when(restaurantRepository.getReferenceById(updatedRestaurant.getId())).thenReturn(updatedRestaurantIdOnly);
-
-            service.saveAndReturnWithDetails(updatedRestaurant.getId(), user.getId());
-
-            then(voteRepository).should().save(voteCaptor.capture());
-
-            Vote updatedVote = new Vote();
-            updatedVote.setId(1L);
-            updatedVote.setRestaurant(updatedRestaurant);
-            updatedVote.setUser(user);
-            updatedVote.setVoteDate(LocalDate.now(clock));
-            updatedVote.setVoteTime(LocalTime.now(clock));
-            Vote voteCaptorValue = voteCaptor.getValue();
-            assertThat(voteCaptorValue.getId()).isEqualTo(vote.getId());
-            assertThat(voteCaptorValue.getVoteTime()).isEqualTo(vote.getVoteTime());
-            assertThat(voteCaptorValue.getVoteDate()).isEqualTo(vote.getVoteDate());
-            assertThat(voteCaptorValue.getUser().getId()).isEqualTo(vote.getUser().getId());
-            assertThat(voteCaptorValue.getRestaurant().getId()).isEqualTo(vote.getRestaurant().getId());
+            long userId = 1L;
+            LocalDate date = LocalDate.now(clock);
+            LocalTime time = LocalTime.now(clock);
+            when(voteTally.findRestaurant(restaurant.getId())).thenReturn(Optional.of(restaurant));
+            when(voteTally.tryRegister(date, userId, restaurant.getId(), time, true)).thenReturn(true);
+            doThrow(new IllegalStateException("queue is full")).when(writeBehind)
+                    .enqueueVote(userId, restaurant.getId(), date, time);
+
+            assertThatThrownBy(() -> service.accept(restaurant.getId(), userId))
+                    .isInstanceOf(IllegalStateException.class);
+            then(voteTally).should().invalidate();
+            then(broadcaster).shouldHaveNoInteractions();
+        }
+
+        @Test
+        void throwWhenAcceptVoteForAbsentRestaurant() {
+            when(voteTally.findRestaurant(1L)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> service.accept(1L, 1L))
+                    .isInstanceOf(IllegalRequestDataException.class)
+                    .hasMessageContaining("Restaurant with id = 1 not found");
+        }
+
+        @Test
+        void throwWhenWithdrawAbsentVote() {
+            long userId = 1L;
+            when(voteTally.findBallot(LocalDate.now(clock), userId)).thenReturn(Optional.empty());
+
+            assertThatThrownBy(() -> service.withdraw(userId))
+                    .isInstanceOf(IllegalRequestDataException.class)
+                    .hasMessageContaining(String.format("Vote of userId = %s for date = %s not found", userId, LocalDate.now(clock)));
+            then(writeBehind).shouldHaveNoInteractions();
         }
     }
 
@@ -0,0 +1,268 @@
+package ru.flint.voteforlunch.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import ru.flint.voteforlunch.model.Ballot;
+import ru.flint.voteforlunch.model.Restaurant;
+import ru.flint.voteforlunch.model.VoteDistribution;
+import ru.flint.voteforlunch.repository.RestaurantRepository;
+import ru.flint.voteforlunch.repository.VoteRepository;
+
+import java.time.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VoteTallyTest {
+    private static final ZonedDateTime NOW = ZonedDateTime.of(2023, 4, 21, 9, 30, 0, 0, ZoneId.of("GMT"));
+    private static final LocalDate TODAY = NOW.toLocalDate();
+
+    private VoteTally tally;
+    private MeterRegistry meterRegistry;
+
+    @Mock
+    private VoteRepository voteRepository;
+    @Mock
+    private RestaurantRepository restaurantRepository;
+    @Mock
+    private VoteWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Restaurant cherry = new Restaurant("Cherry");
+        cherry.setId(1L);
+        Restaurant aisha = new Restaurant("Aisha");
+        aisha.setId(2L);
+        when(restaurantRepository.findAll()).thenReturn(List.of(cherry, aisha));
+        when(voteRepository.getBallotsOnDate(TODAY)).thenReturn(List.of(
+                new Ballot(10L, 1L, LocalTime.of(9, 0)),
+                new Ballot(11L, 2L, LocalTime.of(9, 5)),
+                new Ballot(12L, 2L, LocalTime.of(9, 10))));
+        meterRegistry = new SimpleMeterRegistry();
+        tally = new VoteTally(voteRepository, restaurantRepository, writeBehind, Clock.fixed(NOW.toInstant(), NOW.getZone()), meterRegistry);
+        tally.rebuild();
+    }
+
+    @Test
+    void loadFromRepository() {
+        assertThat(tally.getDistribution(TODAY)).containsExactly(
+                new VoteDistribution(2L, "Aisha", 2L),
+                new VoteDistribution(1L, "Cherry", 1L));
+    }
+
+    @Test
+    void moveChangedVote() {
+        tally.register(TODAY, 11L, 1L, LocalTime.of(9, 20));
+        tally.register(TODAY, 12L, 1L, LocalTime.of(9, 25));
+
+        assertThat(tally.getDistribution(TODAY)).containsExactly(
+                new VoteDistribution(1L, "Cherry", 3L),
+                new VoteDistribution(2L, "Aisha", 0L));
+    }
+
+    @Test
+    void countDistributionReads() {
+        tally.getDistribution(TODAY);
+        tally.getDistribution(TODAY);
+        tally.register(TODAY, 11L, 1L, LocalTime.of(9, 20));
+        tally.getDistribution(TODAY);
+        tally.getDistribution(TODAY);
+
+        assertThat(reads("hit")).isEqualTo(2);
+        assertThat(reads("miss")).isEqualTo(2);
+    }
+
+    @Test
+    void ignoreRepeatedAndOutdatedBallots() {
+        tally.register(TODAY, 10L, 1L, LocalTime.of(9, 0));
+        tally.register(TODAY, 11L, 1L, LocalTime.of(8, 0));
+
+        assertThat(tally.getDistribution(TODAY)).containsExactly(
+                new VoteDistribution(2L, "Aisha", 2L),
+                new VoteDistribution(1L, "Cherry", 1L));
+    }
+
+    @Test
+    void registerOnlyFirstBallotWhenChangeNotAllowed() {
+        assertThat(tally.tryRegister(TODAY, 11L, 1L, LocalTime.of(11, 30), false)).isFalse();
+        assertThat(tally.tryRegister(TODAY, 13L, 1L, LocalTime.of(11, 30), false)).isTrue();
+        assertThat(tally.tryRegister(TODAY, 13L, 2L, LocalTime.of(11, 31), false)).isFalse();
+
+        assertThat(tally.getDistribution(TODAY)).containsExactly(
+                new VoteDistribution(2L, "Aisha", 2L),
+                new VoteDistribution(1L, "Cherry", 2L));
+    }
+
+    @Test
+    void withdrawVote() {
+        tally.withdraw(TODAY, 11L);
+        tally.withdraw(TODAY, 11L);
+
+        assertThat(tally.getDistribution(TODAY)).containsExactly(
+                new VoteDistribution(2L, "Aisha", 1L),
+                new VoteDistribution(1L, "Cherry", 1L));
+    }
+
+    @Test
+    void ignoreNotLiveDate() {
+        tally.register(TODAY.minusDays(1), 11L, 1L, LocalTime.of(9, 20));
+
+        assertThat(tally.isLive(TODAY.minusDays(1))).isFalse();
+        assertThat(tally.getDistribution(TODAY)).containsExactly(
+                new VoteDistribution(2L, "Aisha", 2L),
+                new VoteDistribution(1L, "Cherry", 1L));
+    }
+
+    @Test
+    void reloadAfterInvalidate() {
+        tally.invalidate();
+        tally.getDistribution(TODAY);
+
+        verify(voteRepository, times(2)).getBallotsOnDate(TODAY);
+    }
+
+    @Test
+    void flushQueuedVotesBeforeLoad() {
+        tally.invalidate();
+        tally.getDistribution(TODAY);
+
+        InOrder order = inOrder(writeBehind, voteRepository);
+        order.verify(writeBehind).flush();
+        order.verify(voteRepository).getBallotsOnDate(TODAY);
+    }
+
+    @Test
+    void reloadAfterInvalidateDuringLoad() {
+        tally.invalidate();
+        when(voteRepository.getBallotsOnDate(TODAY)).thenAnswer(invocation -> {
+            // e.g. a restaurant is deleted while the tally is loaded
+            tally.invalidate();
+            return List.of();
+        }).thenReturn(List.of());
+        tally.getDistribution(TODAY);
+        tally.getDistribution(TODAY);
+
+        verify(voteRepository, times(3)).getBallotsOnDate(TODAY);
+    }
+
+    @Test
+    void loadOnceForConcurrentReaders() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        tally.invalidate();
+        when(voteRepository.getBallotsOnDate(TODAY)).thenAnswer(invocation -> {
+            loading.countDown();
+            await(release);
+            return List.of(new Ballot(10L, 1L, LocalTime.of(9, 0)));
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<VoteDistribution>>> readers = new ArrayList<>();
+            readers.add(executor.submit(() -> tally.getDistribution(TODAY)));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> tally.getDistribution(TODAY)));
+            }
+            release.countDown();
+
+            for (Future<List<VoteDistribution>> reader : readers) {
+                assertThat(reader.get(5, TimeUnit.SECONDS)).containsExactly(
+                        new VoteDistribution(1L, "Cherry", 1L),
+                        new VoteDistribution(2L, "Aisha", 0L));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // once on rebuild and once after the invalidation
+        verify(voteRepository, times(2)).getBallotsOnDate(TODAY);
+    }
+
+    @Test
+    void reloadAfterDroppedVote() {
+        ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+        verify(writeBehind).onDropped(listener.capture());
+        tally.register(TODAY, 13L, 1L, LocalTime.of(9, 20));
+
+        listener.getValue().run();
+
+        assertThat(tally.getDistribution(TODAY)).containsExactly(
+                new VoteDistribution(2L, "Aisha", 2L),
+                new VoteDistribution(1L, "Cherry", 1L));
+    }
+
+    @Test
+    void settleAfterRunningVotes() throws Exception {
+        CountDownLatch voting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            executor.execute(() -> tally.vote(now -> {
+                voting.countDown();
+                await(release);
+                return now;
+            }));
+            assertThat(voting.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<?> settled = executor.submit(() -> tally.settle(TODAY.minusDays(1)));
+            assertThatThrownBy(() -> settled.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+            release.countDown();
+            settled.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        tally.settle(TODAY.minusDays(2));
+
+        // once on rebuild and once on settle
+        verify(writeBehind, times(2)).flush();
+        assertThatThrownBy(() -> tally.settle(TODAY)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void concurrentVotes() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (long userId = 100; userId < 1100; userId++) {
+            long voter = userId;
+            executor.execute(() -> {
+                tally.register(TODAY, voter, 1L, LocalTime.of(9, 0));
+                tally.register(TODAY, voter, 2L, LocalTime.of(9, 1));
+                tally.getDistribution(TODAY);
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(tally.getDistribution(TODAY)).containsExactly(
+                new VoteDistribution(2L, "Aisha", 1002L),
+                new VoteDistribution(1L, "Cherry", 1L));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double reads(String result) {
+        return meterRegistry.get("vote.tally.distribution.reads").tag("result", result).counter().count();
+    }
+}
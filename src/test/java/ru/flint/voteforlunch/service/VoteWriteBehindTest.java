@@ -0,0 +1,72 @@
+package ru.flint.voteforlunch.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.flint.voteforlunch.AbstractSpringBootTest;
+import ru.flint.voteforlunch.model.Ballot;
+import ru.flint.voteforlunch.model.Vote;
+import ru.flint.voteforlunch.repository.VoteRepository;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VoteWriteBehindTest extends AbstractSpringBootTest {
+    @Autowired
+    private VoteWriteBehind writeBehind;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Test
+    void flushLastVote() {
+        LocalDate today = LocalDate.now(clock);
+        writeBehind.enqueueVote(1L, 1L, today, LocalTime.of(9, 0));
+        writeBehind.enqueueVote(1L, 2L, today, LocalTime.of(9, 5));
+        writeBehind.flush();
+
+        Vote vote = voteRepository.getByVoteDateAndUserId(today, 1L).orElseThrow();
+        assertThat(vote.getRestaurant().getId()).isEqualTo(2L);
+        assertThat(vote.getVoteTime()).isEqualTo(LocalTime.of(9, 5));
+    }
+
+    @Test
+    void keepNewerStoredVote() {
+        LocalDate today = LocalDate.now(clock);
+        writeBehind.enqueueVote(2L, 2L, today, LocalTime.of(9, 5));
+        writeBehind.flush();
+        writeBehind.enqueueVote(2L, 1L, today, LocalTime.of(9, 0));
+        writeBehind.flush();
+
+        Vote vote = voteRepository.getByVoteDateAndUserId(today, 2L).orElseThrow();
+        assertThat(vote.getRestaurant().getId()).isEqualTo(2L);
+        assertThat(vote.getVoteTime()).isEqualTo(LocalTime.of(9, 5));
+    }
+
+    @Test
+    void flushWithdrawal() {
+        LocalDate today = LocalDate.now(clock);
+        writeBehind.enqueueVote(3L, 1L, today, LocalTime.of(9, 0));
+        writeBehind.enqueueWithdrawal(3L, today);
+        writeBehind.flush();
+
+        assertThat(voteRepository.getByVoteDateAndUserId(today, 3L)).isEmpty();
+    }
+
+    @Test
+    void flushSeveralBatches() {
+        LocalDate today = LocalDate.now(clock);
+        // later than the seeded votes of today, so every one of them is changed
+        for (long userId = 3; userId < 1203; userId++) {
+            writeBehind.enqueueVote(userId, 1L, today, LocalTime.of(11, 0));
+        }
+        writeBehind.flush();
+
+        assertThat(voteRepository.getBallotsOnDate(today).stream()
+                .filter(ballot -> ballot.userId() < 1203)
+                .map(Ballot::restaurantId))
+                .hasSize(1200)
+                .containsOnly(1L);
+    }
+}
@@ -0,0 +1,86 @@
+package ru.flint.voteforlunch.web;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.flint.voteforlunch.util.exceptions.IllegalRequestDataException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotentResponsesTest {
+    private IdempotentResponses responses;
+
+    @BeforeEach
+    void setUp() {
+        responses = new IdempotentResponses(new SimpleMeterRegistry(), Duration.ofMinutes(10), 100);
+    }
+
+    @Test
+    void executeOnce() {
+        AtomicInteger executions = new AtomicInteger();
+
+        assertThat(responses.execute(1L, "key", 1L, executions::incrementAndGet)).isEqualTo(1);
+        assertThat(responses.execute(1L, "key", 1L, executions::incrementAndGet)).isEqualTo(1);
+        assertThat(executions.get()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectKeyReusedForAnotherRequest() {
+        responses.execute(1L, "key", 1L, () -> "vote");
+
+        assertThatThrownBy(() -> responses.execute(1L, "key", 2L, () -> "another vote"))
+                .isInstanceOf(IllegalRequestDataException.class);
+    }
+
+    @Test
+    void executeAgainAfterFailure() {
+        assertThatThrownBy(() -> responses.execute(1L, "key", 1L, () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(responses.execute(1L, "key", 1L, () -> "vote")).isEqualTo("vote");
+    }
+
+    @Test
+    void waitForConcurrentExecution() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> first = executor.submit(() -> responses.execute(1L, "key", 1L, () -> {
+                started.countDown();
+                await(release);
+                return executions.incrementAndGet();
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<Integer> retry = executor.submit(() -> responses.execute(1L, "key", 1L, executions::incrementAndGet));
+            // another key is not blocked by the running request
+            assertThat(responses.execute(1L, "other", 1L, () -> 7)).isEqualTo(7);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            assertThat(retry.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            assertThat(executions.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}